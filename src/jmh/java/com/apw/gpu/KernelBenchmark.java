@@ -0,0 +1,176 @@
+package com.apw.gpu;
+
+import com.aparapi.Kernel;
+import com.aparapi.Range;
+import com.apw.imagemanagement.BayerFrames;
+import com.apw.imagemanagement.ImageManipulator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Time per frame of the Aparapi kernels used by GPUImageModule.
+ * Kernels run in JTP mode, as Java thread pools, so results can be compared with the
+ * ImageManipulator benchmarks on machines without OpenCL.
+ */
+@State(Scope.Thread)
+public class KernelBenchmark {
+
+    private int nrows, ncols;
+    private byte tile;
+    private Range pixels2D, pixels1D;
+    private byte[] mono, simple, bw;
+    private int[] bwInts, rgb, output;
+
+    private MonochromeRasterKernel monochrome;
+    private Monochrome2RasterKernel monochrome2;
+    private BlackWhiteRasterKernel blackWhite;
+    private BlackWhiteRaster2Kernel blackWhite2;
+    private SimpleColorRasterKernel simpleColor;
+    private RGBRasterKernel rgbRaster;
+    private MonoToRGBKernel monoToRGB;
+    private SimpleToRGBKernel simpleToRGB;
+    private BWToRGBKernel bwToRGB;
+    private RemoveNoiseKernel removeNoise;
+    private DilateKernel dilate;
+    private RobertsCrossRasterKernel robertsCross;
+    private Kernel[] kernels;
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("deprecation")
+    public void setUp(BayerFrames frames) {
+        nrows = frames.getHeight();
+        ncols = frames.getWidth();
+        tile = frames.getTile();
+        pixels2D = Range.create2D(nrows, ncols);
+        pixels1D = Range.create(nrows * ncols);
+        mono = new byte[nrows * ncols];
+        simple = new byte[nrows * ncols];
+        bw = new byte[nrows * ncols];
+        bwInts = new int[nrows * ncols];
+        rgb = new int[nrows * ncols];
+        output = new int[nrows * ncols];
+
+        monochrome = new MonochromeRasterKernel();
+        monochrome2 = new Monochrome2RasterKernel();
+        blackWhite = new BlackWhiteRasterKernel();
+        blackWhite2 = new BlackWhiteRaster2Kernel();
+        simpleColor = new SimpleColorRasterKernel();
+        rgbRaster = new RGBRasterKernel();
+        monoToRGB = new MonoToRGBKernel();
+        simpleToRGB = new SimpleToRGBKernel();
+        bwToRGB = new BWToRGBKernel();
+        removeNoise = new RemoveNoiseKernel();
+        dilate = new DilateKernel();
+        robertsCross = new RobertsCrossRasterKernel();
+        kernels = new Kernel[]{monochrome, monochrome2, blackWhite, blackWhite2, simpleColor, rgbRaster,
+                monoToRGB, simpleToRGB, bwToRGB, removeNoise, dilate, robertsCross};
+        for (Kernel kernel : kernels) {
+            kernel.setExecutionModeWithoutFallback(Kernel.EXECUTION_MODE.JTP);
+        }
+
+        //inputs of the kernels that start from a raster rather than the bayer image
+        byte[] bayer = frames.next();
+        ImageManipulator.convertToMonochromeRaster(bayer, mono, nrows, ncols, tile);
+        ImageManipulator.convertToSimpleColorRaster(bayer, simple, nrows, ncols, Math.min(640, ncols), tile);
+        ImageManipulator.convertToBlackWhiteRaster(bayer, bwInts, nrows, ncols, Math.min(640, ncols), tile);
+        ImageManipulator.convertToRGBRaster(bayer, rgb, nrows, ncols, tile);
+        for (int i = 0; i < bw.length; i++) {
+            bw[i] = (byte) (bwInts[i] == 0 ? 0 : 1);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        for (Kernel kernel : kernels) {
+            kernel.dispose();
+        }
+    }
+
+    @Benchmark
+    public byte[] monochrome(BayerFrames frames) {
+        monochrome.setValues(frames.next(), mono, nrows, ncols, tile);
+        monochrome.execute(pixels2D);
+        return monochrome.getMono();
+    }
+
+    @Benchmark
+    public byte[] monochrome2(BayerFrames frames) {
+        monochrome2.setValues(frames.next(), mono, nrows, ncols, tile);
+        monochrome2.execute(pixels2D);
+        return monochrome2.getMono();
+    }
+
+    @Benchmark
+    public byte[] blackWhite(BayerFrames frames) {
+        blackWhite.setValues(frames.next(), bw, nrows, ncols, tile);
+        blackWhite.execute(pixels2D);
+        return blackWhite.getMono();
+    }
+
+    @Benchmark
+    public byte[] blackWhite2(BayerFrames frames) {
+        blackWhite2.setValues(frames.next(), bw, nrows, ncols, tile);
+        blackWhite2.execute(pixels2D);
+        return blackWhite2.getMono();
+    }
+
+    @Benchmark
+    public byte[] simpleColor(BayerFrames frames) {
+        simpleColor.setValues(frames.next(), simple, nrows, ncols, tile);
+        simpleColor.execute(pixels2D);
+        return simpleColor.getSimple();
+    }
+
+    @Benchmark
+    public int[] rgb(BayerFrames frames) {
+        rgbRaster.setValues(frames.next(), output, nrows, ncols, tile);
+        rgbRaster.execute(pixels2D);
+        return rgbRaster.getRgb();
+    }
+
+    @Benchmark
+    public int[] monoToRGB() {
+        monoToRGB.setValues(mono, output, mono.length);
+        monoToRGB.execute(pixels1D);
+        return monoToRGB.getRGB();
+    }
+
+    @Benchmark
+    public int[] simpleToRGB() {
+        simpleToRGB.setValues(simple, output, simple.length);
+        simpleToRGB.execute(pixels1D);
+        return simpleToRGB.getSimpleRGB();
+    }
+
+    @Benchmark
+    public int[] bwToRGB() {
+        bwToRGB.setValues(bw, output, bw.length);
+        bwToRGB.execute(pixels1D);
+        return bwToRGB.getRgb();
+    }
+
+    @Benchmark
+    public int[] removeNoise() {
+        removeNoise.setValues(bwInts, nrows, ncols);
+        removeNoise.execute(pixels2D);
+        return removeNoise.getEroded();
+    }
+
+    @Benchmark
+    public int[] dilate() {
+        dilate.setValues(bwInts, nrows, ncols);
+        dilate.execute(pixels2D);
+        return dilate.getDilated();
+    }
+
+    @Benchmark
+    public int[] robertsCross() {
+        robertsCross.setValues(rgb, output, nrows, ncols);
+        robertsCross.execute(pixels2D);
+        return robertsCross.getOutput();
+    }
+}
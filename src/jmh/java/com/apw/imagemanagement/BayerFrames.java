@@ -0,0 +1,63 @@
+package com.apw.imagemanagement;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.File;
+
+/**
+ * Camera frames fed to the benchmarks, one per invocation in turn.
+ * Frames are loaded from the directory given by the "frames" parameter, recorded with FrameRecorder.
+ * If it holds no frames, frames of the TrakSim track are rendered instead.
+ */
+@State(Scope.Benchmark)
+public class BayerFrames {
+
+    private static final int SIMULATED_FRAMES = 16;
+
+    @Param("frames")
+    public String frames;
+
+    private RecordedFrames recorded;
+    private BayerPlan plan;
+    private int next = 0;
+
+    @Setup(Level.Trial)
+    public void load() {
+        recorded = RecordedFrames.loadOrSimulate(new File(frames), SIMULATED_FRAMES);
+        plan = new BayerPlan(recorded.getTile(), recorded.getWidth(), recorded.getHeight());
+    }
+
+    /**
+     * @return bayer8 image of the next frame
+     */
+    public byte[] next() {
+        return recorded.get(next++);
+    }
+
+    /**
+     * @return number of distinct frames next() cycles through
+     */
+    public int size() {
+        return recorded.size();
+    }
+
+    public int getWidth() {
+        return recorded.getWidth();
+    }
+
+    public int getHeight() {
+        return recorded.getHeight();
+    }
+
+    public byte getTile() {
+        return recorded.getTile();
+    }
+
+    public BayerPlan getPlan() {
+        return plan;
+    }
+}
@@ -0,0 +1,98 @@
+package com.apw.imagemanagement;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Time per frame of every ImageManagementModule image, including the rasters each one allocates.
+ */
+@State(Scope.Thread)
+public class ImageManagementModuleBenchmark {
+
+    private ImageManagementModule module;
+    private long frameNumber = 0L;
+    private BitMask mask;
+
+    @Setup(Level.Trial)
+    public void setUp(BayerFrames frames) {
+        module = new ImageManagementModule(frames.getWidth(), frames.getHeight(), frames.getTile());
+        mask = new BitMask(frames.getWidth(), frames.getHeight());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.out.println(module.getFramePool());
+    }
+
+    @Benchmark
+    public byte[] monochrome(BayerFrames frames) {
+        return module.getMonochromeRaster(frames.next());
+    }
+
+    @Benchmark
+    public byte[] monochrome2(BayerFrames frames) {
+        return module.getMonochrome2Raster(frames.next());
+    }
+
+    @Benchmark
+    public int[] blackWhite(BayerFrames frames) {
+        return module.getBlackWhiteRaster(frames.next());
+    }
+
+    @Benchmark
+    public BitMask blackWhiteMask(BayerFrames frames) {
+        mask.clear();
+        return module.getBlackWhiteMask(frames.next(), mask);
+    }
+
+    @Benchmark
+    public byte[] simpleColor(BayerFrames frames) {
+        return module.getSimpleColorRaster(frames.next());
+    }
+
+    @Benchmark
+    public int[] rgb(BayerFrames frames) {
+        return module.getRGBRaster(frames.next());
+    }
+
+    @Benchmark
+    public int[] monoRGB(BayerFrames frames) {
+        return module.getMonoRGBRaster(frames.next());
+    }
+
+    @Benchmark
+    public int[] simpleRGB(BayerFrames frames) {
+        return module.getSimpleRGBRaster(frames.next());
+    }
+
+    @Benchmark
+    public int[] bwRGB(BayerFrames frames) {
+        return module.getBWRGBRaster(frames.next());
+    }
+
+    @Benchmark
+    public int[] robertsCross(BayerFrames frames) {
+        return module.getRobertsCross(frames.next());
+    }
+
+    @Benchmark
+    public int[] road(BayerFrames frames) {
+        return module.getRoad(frames.next());
+    }
+
+    /**
+     * The decode MrModule runs every frame, with pooled planes released like the pipeline does
+     */
+    @Benchmark
+    public FrameContext decodeFrame(BayerFrames frames) {
+        long number = ++frameNumber;
+        FrameContext frame = module.decodeFrame(frames.next(),
+                ImageManagementModule.PLANE_BLACK_WHITE | ImageManagementModule.PLANE_SIMPLE_COLOR, number);
+        module.releaseFrame(number - 1);
+        return frame;
+    }
+}
@@ -0,0 +1,205 @@
+package com.apw.imagemanagement;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Arrays;
+
+/**
+ * Time per frame of every ImageManipulator conversion.
+ * Outputs are allocated once, so the allocation rate shows only what the conversions allocate themselves.
+ * The trial fails if Morphology stops matching removeNoise and dilate, which it replaces.
+ */
+@State(Scope.Thread)
+public class ImageManipulatorBenchmark {
+
+    private int nrows, ncols, frameWidth;
+    private BayerPlan plan;
+    private RegionOfInterest steering, speed;
+    private byte[] mono, simple, bayerRGB, smooth;
+    private int[] bw, rgb, output;
+    private BitMask mask;
+    private IntegralImage integral;
+    private SimpleColorTable colors;
+    private Morphology morphology;
+
+    @Setup(Level.Trial)
+    public void setUp(BayerFrames frames) {
+        nrows = frames.getHeight();
+        ncols = frames.getWidth();
+        frameWidth = Math.min(640, ncols);
+        plan = frames.getPlan();
+        steering = new RegionOfInterest(nrows / 2, nrows, 0, frameWidth);
+        speed = new RegionOfInterest(0, nrows, 0, frameWidth);
+        mono = new byte[nrows * ncols];
+        simple = new byte[nrows * ncols];
+        bayerRGB = new byte[nrows * ncols * 4];
+        smooth = new byte[nrows * ncols * 4];
+        bw = new int[nrows * ncols];
+        rgb = new int[nrows * ncols];
+        output = new int[nrows * ncols];
+        mask = new BitMask(ncols, nrows);
+        integral = new IntegralImage();
+        colors = new SimpleColorTable(6, ColorThresholds.DEFAULT);
+        morphology = new Morphology(3);
+        ImageManipulator.setLuminanceMultiplier(1.6);
+
+        //inputs of the conversions that start from a raster rather than the bayer image
+        byte[] bayer = frames.next();
+        ImageManipulator.convertToBlackWhiteRaster(bayer, bw, plan, steering);
+        ImageManipulator.convertToMonochromeRaster(bayer, mono, nrows, ncols, plan.getTile());
+        ImageManipulator.convertToSimpleColorRaster(bayer, simple, plan, speed);
+        ImageManipulator.convertToRGBRaster(bayer, rgb, plan);
+        checkMorphology();
+    }
+
+    private void checkMorphology() {
+        int[] expected = new int[nrows * ncols];
+        int[] actual = bw.clone();
+        ImageManipulator.removeNoise(bw, expected, nrows, ncols, steering);
+        morphology.erode(actual, nrows, ncols, steering);
+        if (!Arrays.equals(expected, actual)) {
+            throw new IllegalStateException("Morphology erode does not match removeNoise");
+        }
+        expected = new int[nrows * ncols];
+        actual = bw.clone();
+        ImageManipulator.dilate(bw, expected, nrows, ncols, steering);
+        morphology.dilate(actual, nrows, ncols, steering);
+        if (!Arrays.equals(expected, actual)) {
+            throw new IllegalStateException("Morphology dilate does not match dilate");
+        }
+    }
+
+    @Benchmark
+    public byte[] monochrome(BayerFrames frames) {
+        ImageManipulator.convertToMonochromeRaster(frames.next(), mono, nrows, ncols, plan.getTile());
+        return mono;
+    }
+
+    @Benchmark
+    public byte[] monochrome2(BayerFrames frames) {
+        ImageManipulator.convertToMonochrome2Raster(frames.next(), mono, plan);
+        return mono;
+    }
+
+    @Benchmark
+    public int[] blackWhite(BayerFrames frames) {
+        ImageManipulator.convertToBlackWhiteRaster(frames.next(), output, plan, steering);
+        return output;
+    }
+
+    @Benchmark
+    public int[] adaptiveBlackWhite(BayerFrames frames) {
+        integral.compute(frames.next(), plan, steering);
+        ImageManipulator.convertToAdaptiveBlackWhiteRaster(integral, output, ncols, steering, 31);
+        return output;
+    }
+
+    @Benchmark
+    public BitMask blackWhiteMask(BayerFrames frames) {
+        ImageManipulator.convertToBlackWhiteMask(frames.next(), mask, plan, steering);
+        return mask;
+    }
+
+    @Benchmark
+    public byte[] blackWhite2(BayerFrames frames) {
+        ImageManipulator.convertToBlackWhite2Raster(frames.next(), mono, plan);
+        return mono;
+    }
+
+    @Benchmark
+    public byte[] simpleColor(BayerFrames frames) {
+        ImageManipulator.convertToSimpleColorRaster(frames.next(), simple, plan, speed);
+        return simple;
+    }
+
+    @Benchmark
+    public byte[] simpleColorTable(BayerFrames frames) {
+        ImageManipulator.convertToSimpleColorRaster(frames.next(), simple, plan, speed, colors);
+        return simple;
+    }
+
+    @Benchmark
+    public int[] rgb(BayerFrames frames) {
+        ImageManipulator.convertToRGBRaster(frames.next(), output, plan);
+        return output;
+    }
+
+    @Benchmark
+    public byte[] byteRGB(BayerFrames frames) {
+        ImageManipulator.byteRGB(frames.next(), bayerRGB, plan);
+        return bayerRGB;
+    }
+
+    @Benchmark
+    public byte[] smooth(BayerFrames frames) {
+        ImageManipulator.smooth(frames.next(), smooth, plan);
+        return smooth;
+    }
+
+    @Benchmark
+    public int[] fused(BayerFrames frames) {
+        ImageManipulator.convertToFusedRasters(frames.next(), output, steering, simple, speed, colors,
+                null, null, speed, plan, 0, nrows);
+        return output;
+    }
+
+    @Benchmark
+    public int[] robertsCross() {
+        ImageManipulator.convertToRobertsCrossRaster(rgb, output, nrows, ncols);
+        return output;
+    }
+
+    @Benchmark
+    public int[] removeNoise() {
+        ImageManipulator.removeNoise(bw, output, nrows, ncols, steering);
+        return output;
+    }
+
+    @Benchmark
+    public int[] dilate() {
+        ImageManipulator.dilate(bw, output, nrows, ncols, steering);
+        return output;
+    }
+
+    @Benchmark
+    public int[] morphologyErode() {
+        System.arraycopy(bw, 0, output, 0, bw.length);
+        morphology.erode(output, nrows, ncols, steering);
+        return output;
+    }
+
+    @Benchmark
+    public int[] morphologyDilate() {
+        System.arraycopy(bw, 0, output, 0, bw.length);
+        morphology.dilate(output, nrows, ncols, steering);
+        return output;
+    }
+
+    @Benchmark
+    public int[] findRoad() {
+        ImageManipulator.findRoad(bw, output, nrows, ncols, steering);
+        return output;
+    }
+
+    @Benchmark
+    public int[] simpleToRGB() {
+        ImageManipulator.convertSimpleToRGB(simple, output, output.length);
+        return output;
+    }
+
+    @Benchmark
+    public int[] monoToRGB() {
+        ImageManipulator.convertMonotoRGB(mono, output, output.length);
+        return output;
+    }
+
+    @Benchmark
+    public int[] bwToRGB() {
+        ImageManipulator.convertBWToRGB(bw, output, output.length);
+        return output;
+    }
+}
@@ -0,0 +1,55 @@
+package com.apw.steering;
+
+import com.apw.imagemanagement.BayerFrames;
+import com.apw.imagemanagement.BitMask;
+import com.apw.imagemanagement.ImageManagementModule;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Black and white frames steering runs on, decoded once from the recorded camera frames
+ * the same way ImageManagementModule decodes them while driving.
+ */
+@State(Scope.Benchmark)
+public class BlackWhiteFrames {
+
+    private int[][] frames;
+    private BitMask[] masks;
+    private int width, height;
+
+    @Setup(Level.Trial)
+    public void decode(BayerFrames bayer) {
+        width = bayer.getWidth();
+        height = bayer.getHeight();
+        ImageManagementModule module = new ImageManagementModule(width, height, bayer.getTile());
+        frames = new int[bayer.size()][];
+        masks = new BitMask[frames.length];
+        for (int idx = 0; idx < frames.length; idx++) {
+            byte[] image = bayer.next();
+            frames[idx] = module.getBlackWhiteRaster(image);
+            masks[idx] = module.getBlackWhiteMask(image, new BitMask(width, height));
+        }
+    }
+
+    public int size() {
+        return frames.length;
+    }
+
+    public int[] get(int index) {
+        return frames[index];
+    }
+
+    public BitMask getMask(int index) {
+        return masks[index];
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+}
@@ -0,0 +1,79 @@
+package com.apw.steering;
+
+import com.apw.steering.steeringversions.SteeringBase;
+import com.apw.steering.steeringversions.SteeringMk1;
+import com.apw.steering.steeringversions.SteeringMk2;
+import com.apw.steering.steeringversions.SteeringMk4;
+import com.apw.steering.steeringversions.SteeringMk5;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Time and allocation per frame of each steering version, replaying the recorded black and white frames in order.
+ * The angle each version steered to on every frame is printed at the end of the trial,
+ * so the versions can be compared for accuracy as well as cost.
+ */
+@State(Scope.Thread)
+public class SteeringBenchmark {
+
+    @Param({"1", "2", "4", "5"})
+    public int version;
+
+    // Steer on the black and white mask when the version can, like SteeringModule does
+    @Param({"true"})
+    public boolean mask;
+
+    private SteeringBase steering;
+    private int[] angles;
+    private int next = 0;
+
+    @Setup(Level.Trial)
+    public void setUp(BlackWhiteFrames frames) {
+        // The camera image is the left of the window, like SteeringModule sets up for TrakSim
+        int cameraWidth = Math.min(640, frames.getWidth());
+        switch (version) {
+            case 1:
+                steering = new SteeringMk1(cameraWidth, frames.getHeight(), frames.getWidth());
+                break;
+            case 2:
+                steering = new SteeringMk2(cameraWidth, frames.getHeight(), frames.getWidth());
+                break;
+            case 4:
+                steering = new SteeringMk4(cameraWidth, frames.getHeight(), frames.getWidth());
+                break;
+            case 5:
+                steering = new SteeringMk5(cameraWidth, frames.getHeight(), frames.getWidth());
+                break;
+            default:
+                throw new IllegalArgumentException("No steering version " + version);
+        }
+        angles = new int[frames.size()];
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        StringBuilder builder = new StringBuilder();
+        long absoluteSum = 0;
+        for (int angle : angles) {
+            absoluteSum += Math.abs(angle);
+            builder.append(' ').append(angle);
+        }
+        System.out.printf("%n%s angles:%s (mean |angle| %.2f)%n", steering.getClass().getSimpleName(), builder,
+                (double) absoluteSum / angles.length);
+    }
+
+    @Benchmark
+    public int steeringAngle(BlackWhiteFrames frames) {
+        int index = next;
+        next = (next + 1) % frames.size();
+        int angle = mask && steering.usesMask() ? steering.getSteeringAngle(frames.getMask(index))
+                : steering.getSteeringAngle(frames.get(index));
+        angles[index] = angle;
+        return angle;
+    }
+}
@@ -17,7 +17,7 @@ public class CamControl extends CarControlBase {
             return super.readCameraImage();
         } catch (IllegalStateException ex) {
             System.err.println("An error occurred in CamControl while reading the camera image from FlyCamera.");
-            return getRecentCameraImage();
+            return repeatCameraImage();
         }
     }
 }
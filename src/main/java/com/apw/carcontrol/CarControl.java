@@ -1,5 +1,7 @@
 package com.apw.carcontrol;
 
+import com.apw.imagemanagement.BitMask;
+
 import java.awt.*;
 import java.util.ArrayList;
 
@@ -23,6 +25,22 @@ public interface CarControl {
      */
     byte[] getRecentCameraImage();
 
+    /**
+     * Keeps the most recent camera image from being overwritten by later calls to {@link #readCameraImage() readCameraImage}
+     * until {@link #releaseCameraImage(long) releaseCameraImage} is called with the same frame number.
+     * An image already held by another frame stays held by that frame only.
+     *
+     * @param frameNumber The frame the most recent camera image belongs to.
+     */
+    void holdCameraImage(long frameNumber);
+
+    /**
+     * Lets the camera image held for a frame be overwritten again.
+     *
+     * @param frameNumber The frame whose camera image is no longer used.
+     */
+    void releaseCameraImage(long frameNumber);
+
     /**
      * Gets a processed image. This should be processed and set through {@link #setProcessedImage(byte[]) setCameraImage}. If not, an exception may be thrown.
      *
@@ -57,6 +75,20 @@ public interface CarControl {
      */
     void setRGBImage(int[] image);
 
+    /**
+     * Gets the black and white mask, the same image as {@link #getRGBImage() getRGBImage} packed one bit per pixel.
+     *
+     * @return The black and white mask, or null if none was decoded for this frame.
+     */
+    BitMask getBlackWhiteMask();
+
+    /**
+     * Sets the black and white mask.
+     *
+     * @param mask The black and white mask, or null.
+     */
+    void setBlackWhiteMask(BitMask mask);
+
     /**
      * Gets the width of the image.
      * @return The image width as an int.
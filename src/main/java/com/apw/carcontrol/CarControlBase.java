@@ -4,21 +4,31 @@ import com.apw.apw3.DriverCons;
 import com.apw.apw3.MyMath;
 import com.apw.apw3.SimCamera;
 import com.apw.fly2cam.FlyCamera;
+import com.apw.imagemanagement.BitMask;
 import com.apw.sbcio.PWMController;
 import java.awt.Insets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 
 public class CarControlBase implements CarControl {
+    // Camera images kept so that reading a new one never overwrites one still being processed
+    private static final int CAMERA_BUFFERS = 3;
+    private static final long NOT_HELD = -1L;
+
     protected final int SteerPin, GasPin;
     protected final double LefScaleSt, RitScaleSt;
     protected FlyCamera cam;
     protected HashMap<Integer, Runnable> keyBindings;
     protected PWMController driveSys;
     private Insets edges;
-    private byte[] cameraImage = null;
+    private volatile byte[] cameraImage = null;
+    private final byte[][] cameraBuffers = new byte[CAMERA_BUFFERS][];
+    private final long[] cameraHolders = new long[CAMERA_BUFFERS];
+    private int cameraSlot = 0;
     private byte[] processedImage = null;
     private int[] rgbImage = null;
+    private BitMask blackWhiteMask = null;
     private int[] renderedImage = null;
     private int currentSteering = 0;
     private int currentVelocity = 0;
@@ -49,22 +59,60 @@ public class CarControlBase implements CarControl {
 
         lines = new ArrayList<>();
         rects = new ArrayList<>();
+        Arrays.fill(cameraHolders, NOT_HELD);
     }
 
+    /**
+     * Reads the next camera image into a buffer that is neither the most recent image nor held by a frame,
+     * so images already handed out stay unchanged while they are processed.
+     */
     @Override
     public byte[] readCameraImage() {
         int nrows = imageHeight;
         int ncols = imageWidth;
-        if (cameraImage == null || (nrows * ncols * 4) != cameraImage.length) {
-            cameraImage = new byte[nrows * ncols * 4];
-        }
-        boolean b = cam.NextFrame(cameraImage);
+        byte[] buffer = nextCameraBuffer(nrows * ncols * 4);
+        boolean b = cam.NextFrame(buffer);
         if (!b) {
             throw new IllegalStateException("Error reading image from camera!");
         }
 
 //        processedImage = null;
-        return cameraImage;
+        cameraImage = buffer;
+        return buffer;
+    }
+
+    private synchronized byte[] nextCameraBuffer(int size) {
+        for (int i = 1; i <= CAMERA_BUFFERS; i++) {
+            int slot = (cameraSlot + i) % CAMERA_BUFFERS;
+            if (cameraHolders[slot] != NOT_HELD || (cameraBuffers[slot] != null && cameraBuffers[slot] == cameraImage)) {
+                continue;
+            }
+            if (cameraBuffers[slot] == null || cameraBuffers[slot].length != size) {
+                cameraBuffers[slot] = new byte[size];
+            }
+            cameraSlot = slot;
+            return cameraBuffers[slot];
+        }
+        // Every buffer is in use, read into one that is not kept
+        return new byte[size];
+    }
+
+    /**
+     * Copies the most recent camera image into a buffer of its own and makes it the most recent,
+     * for when reading a new image fails. The recent image may still be held by the frame it was read for,
+     * so the next frame gets a copy to hold rather than sharing that buffer.
+     *
+     * @return The copy, or null if no image has been read yet.
+     */
+    protected byte[] repeatCameraImage() {
+        byte[] recent = cameraImage;
+        if (recent == null) {
+            return null;
+        }
+        byte[] buffer = nextCameraBuffer(recent.length);
+        System.arraycopy(recent, 0, buffer, 0, recent.length);
+        cameraImage = buffer;
+        return buffer;
     }
 
     @Override
@@ -72,6 +120,26 @@ public class CarControlBase implements CarControl {
         return cameraImage;
     }
 
+    @Override
+    public synchronized void holdCameraImage(long frameNumber) {
+        for (int slot = 0; slot < CAMERA_BUFFERS; slot++) {
+            // A buffer held by another frame stays with it, releasing this frame must not free it
+            if (cameraBuffers[slot] != null && cameraBuffers[slot] == cameraImage
+                    && cameraHolders[slot] == NOT_HELD) {
+                cameraHolders[slot] = frameNumber;
+            }
+        }
+    }
+
+    @Override
+    public synchronized void releaseCameraImage(long frameNumber) {
+        for (int slot = 0; slot < CAMERA_BUFFERS; slot++) {
+            if (cameraHolders[slot] == frameNumber) {
+                cameraHolders[slot] = NOT_HELD;
+            }
+        }
+    }
+
     @Override
     public byte[] getProcessedImage() {
         return processedImage;
@@ -92,6 +160,16 @@ public class CarControlBase implements CarControl {
         this.rgbImage = rgbImage;
     }
 
+    @Override
+    public BitMask getBlackWhiteMask() {
+        return blackWhiteMask;
+    }
+
+    @Override
+    public void setBlackWhiteMask(BitMask mask) {
+        this.blackWhiteMask = mask;
+    }
+
     /**
      * Gets the image to be rendered on the screen. Normally should not be used by any class except the renderer itself.
      *
@@ -155,7 +233,9 @@ public class CarControlBase implements CarControl {
 
         currentVelocity = velocity;
         if (driveSys != null) {
+            long start = System.nanoTime();
             driveSys.setServoAngle(GasPin, velocity + 90);
+            LatencyMonitor.getInstance().recordSince(LatencyMonitor.SERVO, start);
         }
     }
 
@@ -168,7 +248,9 @@ public class CarControlBase implements CarControl {
         currentSteering = angle;
 
         if (driveSys != null) {
+            long start = System.nanoTime();
             driveSys.setServoAngle(SteerPin, angle + 90);
+            LatencyMonitor.getInstance().recordSince(LatencyMonitor.SERVO, start);
         }
     }
 
@@ -0,0 +1,294 @@
+package com.apw.carcontrol;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongConsumer;
+
+/**
+ * Runs each frame through a graph of stages, each stage on its own thread.
+ *
+ * Between stages there is a queue holding a single frame. When a stage is still busy and a newer
+ * frame arrives, the waiting frame is dropped and replaced, so a slow stage always works on the
+ * most recent frame instead of falling further and further behind.
+ *
+ * Every stage has a deadline measured from when its frame was captured. A frame that is already
+ * past the deadline when the stage picks it up is skipped, and a result finished after the
+ * deadline is not passed on to the following stages.
+ *
+ * Once every stage is done with a frame, whether it was processed, dropped or skipped,
+ * the retire callback is called with its frame number.
+ *
+ * @param <F> what is passed from one stage to the next
+ * @see MrModule
+ */
+public class FramePipeline<F> {
+
+    /**
+     * Work done by a stage on one frame
+     * @param <F> what is passed from one stage to the next
+     */
+    public interface StageWork<F> {
+        /**
+         * @param frameNumber number of the frame
+         * @param frame output of the previous stage, null for a source stage
+         * @return what is passed to the following stages
+         */
+        F process(long frameNumber, F frame);
+    }
+
+    private final LongConsumer retire;
+    private final List<Stage> stages = new ArrayList<>();
+    private final List<Stage> sources = new ArrayList<>();
+    private volatile boolean running = false;
+
+    /**
+     * @param retire called with the frame number once every stage is done with a frame
+     */
+    public FramePipeline(LongConsumer retire) {
+        this.retire = retire;
+    }
+
+    /**
+     * Adds a stage that starts every frame, such as reading the camera
+     * @param name name of the stage and its thread
+     * @param deadlineMillis time after capture the stage's result is still used, 0 for no deadline
+     * @param work work done on each frame, given a null frame
+     * @return the stage, to add following stages to
+     */
+    public synchronized Stage addSource(String name, long deadlineMillis, StageWork<F> work) {
+        Stage stage = addStage(name, deadlineMillis, work);
+        sources.add(stage);
+        return stage;
+    }
+
+    /**
+     * Adds a stage run on the result of other stages
+     * @param name name of the stage and its thread
+     * @param deadlineMillis time after capture the stage's result is still used, 0 for no deadline
+     * @param work work done on each frame
+     * @param upstream stages whose results are given to this one
+     * @return the stage, to add following stages to
+     */
+    @SafeVarargs
+    public final synchronized Stage addStage(String name, long deadlineMillis, StageWork<F> work, Stage... upstream) {
+        if (running) {
+            throw new IllegalStateException("Stages must be added before the pipeline is started");
+        }
+        Stage stage = new Stage(name, deadlineMillis, work);
+        for (Stage previous : upstream) {
+            previous.downstream.add(stage);
+        }
+        stages.add(stage);
+        return stage;
+    }
+
+    /**
+     * Starts the thread of every stage
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        for (Stage stage : stages) {
+            stage.thread.start();
+        }
+    }
+
+    /**
+     * Starts a new frame, captured now, at every source stage
+     * @param frameNumber number of the frame
+     */
+    public void submit(long frameNumber) {
+        Ticket ticket = new Ticket(frameNumber, System.nanoTime());
+        for (Stage source : sources) {
+            source.offer(ticket.forward(null));
+        }
+        ticket.release();
+    }
+
+    /**
+     * Stops every stage thread, frames still waiting are not processed
+     */
+    public synchronized void shutdown() {
+        running = false;
+        for (Stage stage : stages) {
+            LockSupport.unpark(stage.thread);
+        }
+    }
+
+    public List<Stage> getStages() {
+        return Collections.unmodifiableList(stages);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("FramePipeline");
+        for (Stage stage : stages) {
+            builder.append("\n  ").append(stage);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * One frame on its way through the pipeline. Every ticket of a frame shares one reference count,
+     * and the frame is retired when the last ticket is released.
+     */
+    private class Ticket {
+        private final long frameNumber;
+        private final long captureNanos;
+        private final AtomicInteger references;
+        private final F frame;
+
+        private Ticket(long frameNumber, long captureNanos) {
+            this(frameNumber, captureNanos, new AtomicInteger(1), null);
+        }
+
+        private Ticket(long frameNumber, long captureNanos, AtomicInteger references, F frame) {
+            this.frameNumber = frameNumber;
+            this.captureNanos = captureNanos;
+            this.references = references;
+            this.frame = frame;
+        }
+
+        /**
+         * @return a new reference to the frame carrying a stage's result
+         */
+        private Ticket forward(F result) {
+            references.incrementAndGet();
+            return new Ticket(frameNumber, captureNanos, references, result);
+        }
+
+        private void release() {
+            if (references.decrementAndGet() == 0) {
+                retire.accept(frameNumber);
+            }
+        }
+    }
+
+    /**
+     * A step of the pipeline with its own thread and a queue of one frame
+     */
+    public class Stage {
+        private final String name;
+        private final long deadlineNanos;
+        private final StageWork<F> work;
+        private final List<Stage> downstream = new ArrayList<>();
+        private final AtomicReference<Ticket> waiting = new AtomicReference<>();
+        private final Thread thread;
+
+        private final AtomicLong processed = new AtomicLong();
+        private final AtomicLong dropped = new AtomicLong();
+        private final AtomicLong late = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+
+        private Stage(String name, long deadlineMillis, StageWork<F> work) {
+            this.name = name;
+            deadlineNanos = deadlineMillis > 0 ? TimeUnit.MILLISECONDS.toNanos(deadlineMillis) : Long.MAX_VALUE;
+            this.work = work;
+            thread = new Thread(this::loop, name);
+        }
+
+        /**
+         * Queues a frame, replacing the frame waiting if the stage has not started it yet
+         */
+        private void offer(Ticket ticket) {
+            Ticket replaced = waiting.getAndSet(ticket);
+            if (replaced != null) {
+                dropped.incrementAndGet();
+                replaced.release();
+            }
+            LockSupport.unpark(thread);
+        }
+
+        private void loop() {
+            while (running) {
+                Ticket ticket = waiting.getAndSet(null);
+                if (ticket == null) {
+                    LockSupport.park(this);
+                    continue;
+                }
+                try {
+                    run(ticket);
+                } finally {
+                    ticket.release();
+                }
+            }
+            Ticket left = waiting.getAndSet(null);
+            if (left != null) {
+                left.release();
+            }
+        }
+
+        private void run(Ticket ticket) {
+            if (expired(ticket)) {
+                late.incrementAndGet();
+                return;
+            }
+            F result;
+            try {
+                result = work.process(ticket.frameNumber, ticket.frame);
+            } catch (RuntimeException e) {
+                failed.incrementAndGet();
+                e.printStackTrace();
+                return;
+            }
+            processed.incrementAndGet();
+            if (expired(ticket)) {
+                late.incrementAndGet();
+                return;
+            }
+            for (Stage next : downstream) {
+                next.offer(ticket.forward(result));
+            }
+        }
+
+        private boolean expired(Ticket ticket) {
+            return System.nanoTime() - ticket.captureNanos > deadlineNanos;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return number of frames the stage finished
+         */
+        public long getProcessed() {
+            return processed.get();
+        }
+
+        /**
+         * @return number of frames replaced by a newer frame before the stage started them
+         */
+        public long getDropped() {
+            return dropped.get();
+        }
+
+        /**
+         * @return number of frames skipped or not passed on because they were past the deadline
+         */
+        public long getLate() {
+            return late.get();
+        }
+
+        /**
+         * @return number of frames whose work threw an exception
+         */
+        public long getFailed() {
+            return failed.get();
+        }
+
+        @Override
+        public String toString() {
+            return name + " processed: " + processed + " dropped: " + dropped
+                    + " late: " + late + " failed: " + failed;
+        }
+    }
+}
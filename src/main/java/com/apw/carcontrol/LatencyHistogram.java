@@ -0,0 +1,140 @@
+package com.apw.carcontrol;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts latencies in nanoseconds in log-linear buckets, in the style of HdrHistogram.
+ * Values below 64 get a bucket each, and every power of two above that is split into
+ * 32 buckets, so any recorded value is known to within about 2% while the whole range
+ * up to a minute fits in about a thousand counters.
+ *
+ * Recording never locks or allocates, so it can be called from every pipeline thread.
+ *
+ * @see LatencyMonitor
+ */
+public class LatencyHistogram {
+
+    // Buckets below 2 * HALF_BUCKETS hold one value each, every power of two above holds HALF_BUCKETS
+    private static final int HALF_BUCKET_BITS = 5;
+    private static final int HALF_BUCKETS = 1 << HALF_BUCKET_BITS;
+    // Largest value kept exactly, larger values are counted as this, about 68 seconds
+    private static final long HIGHEST_VALUE = (1L << 36) - 1;
+    private static final int BUCKETS = index(HIGHEST_VALUE) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * @param nanos latency to count, negative values are counted as 0
+     */
+    public void recordValue(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        } else if (nanos > HIGHEST_VALUE) {
+            nanos = HIGHEST_VALUE;
+        }
+        counts.incrementAndGet(index(nanos));
+        count.incrementAndGet();
+        sum.addAndGet(nanos);
+        long previous = max.get();
+        while (nanos > previous && !max.compareAndSet(previous, nanos)) {
+            previous = max.get();
+        }
+    }
+
+    /**
+     * Records the time since a System.nanoTime() timestamp
+     * @param startNanos System.nanoTime() when the measured work started
+     */
+    public void recordSince(long startNanos) {
+        recordValue(System.nanoTime() - startNanos);
+    }
+
+    private static int index(long value) {
+        int shift = Math.max(0, 63 - Long.numberOfLeadingZeros(value) - HALF_BUCKET_BITS);
+        return (shift << HALF_BUCKET_BITS) + (int) (value >>> shift);
+    }
+
+    /**
+     * @return the middle of the range of values counted in a bucket
+     */
+    private static long value(int index) {
+        int shift = Math.max(0, (index >> HALF_BUCKET_BITS) - 1);
+        long lowest = (long) (index - (shift << HALF_BUCKET_BITS)) << shift;
+        return lowest + ((1L << shift) >> 1);
+    }
+
+    /**
+     * @param percentile 0-100
+     * @return latency in nanoseconds that the given percent of the recorded values are at or below,
+     *      0 if nothing was recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        long total = count.get();
+        if (total == 0) {
+            return 0;
+        }
+        if (percentile >= 100) {
+            return getMax();
+        }
+        long wanted = Math.max(1, (long) Math.ceil(percentile / 100.0 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= wanted) {
+                return Math.min(value(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * Adds every value recorded in another histogram to this one
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            long bucket = other.counts.get(i);
+            if (bucket != 0) {
+                counts.addAndGet(i, bucket);
+            }
+        }
+        count.addAndGet(other.count.get());
+        sum.addAndGet(other.sum.get());
+        long otherMax = other.max.get();
+        long previous = max.get();
+        while (otherMax > previous && !max.compareAndSet(previous, otherMax)) {
+            previous = max.get();
+        }
+    }
+
+    /**
+     * Forgets every recorded value. Values recorded while resetting may be partly kept.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        count.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * @return average recorded latency in nanoseconds, 0 if nothing was recorded
+     */
+    public double getMean() {
+        long total = count.get();
+        return total == 0 ? 0 : (double) sum.get() / total;
+    }
+}
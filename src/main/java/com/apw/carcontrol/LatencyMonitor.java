@@ -0,0 +1,162 @@
+package com.apw.carcontrol;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects a latency histogram for every stage of the control loop, from reading the camera to
+ * commanding the servos. Stages are named, and a stage's histogram is made the first time it is recorded.
+ *
+ * Values are collected in intervals. Once started, the monitor ends an interval every period,
+ * keeping the finished interval for getInterval() and the on-screen overlay, and optionally printing it.
+ *
+ * @see LatencyTestModule
+ */
+public class LatencyMonitor {
+
+    // Stages recorded by the control loop, conversions are recorded under their ImageManagementModule.Conversion name
+    public static final String CAPTURE = "CAPTURE";
+    public static final String STEERING = "STEERING";
+    public static final String SPEED = "SPEED";
+    public static final String SERVO = "SERVO";
+    public static final String PAINT = "PAINT";
+    // From capturing a frame to commanding the steering servo for it
+    public static final String END_TO_END = "END_TO_END";
+
+    private static final LatencyMonitor instance = new LatencyMonitor();
+
+    private final Map<String, Stage> stages = new ConcurrentHashMap<>();
+    // Stage names in the order they were first recorded
+    private final List<String> names = new CopyOnWriteArrayList<>();
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * @return the monitor shared by every module
+     */
+    public static LatencyMonitor getInstance() {
+        return instance;
+    }
+
+    /**
+     * @param stage name of the stage
+     * @param nanos latency of the stage
+     */
+    public void record(String stage, long nanos) {
+        Stage histograms = stages.get(stage);
+        if (histograms == null) {
+            histograms = stages.computeIfAbsent(stage, name -> {
+                names.add(name);
+                return new Stage();
+            });
+        }
+        histograms.current.recordValue(nanos);
+    }
+
+    /**
+     * Records the time since a System.nanoTime() timestamp
+     * @param stage name of the stage
+     * @param startNanos System.nanoTime() when the stage started
+     */
+    public void recordSince(String stage, long startNanos) {
+        record(stage, System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Ends the current interval every period
+     * @param periodMillis length of an interval
+     * @param out where each finished interval is printed, or null to not print
+     */
+    public synchronized void start(long periodMillis, PrintStream out) {
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Latency Monitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(() -> {
+            rollover();
+            if (out != null) {
+                out.println(this);
+            }
+        }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Ends the current interval, its values become the ones returned by getInterval().
+     * Histograms are swapped rather than copied, so readers never see a partly finished interval
+     * and values recorded while rolling over are kept.
+     */
+    public void rollover() {
+        for (Stage stage : stages.values()) {
+            stage.rollover();
+        }
+    }
+
+    /**
+     * @param stage name of the stage
+     * @return latencies recorded for the stage in the last finished interval, or null if it was never recorded
+     */
+    public LatencyHistogram getInterval(String stage) {
+        Stage histograms = stages.get(stage);
+        return histograms == null ? null : histograms.finished;
+    }
+
+    /**
+     * @return names of every recorded stage, in the order they were first recorded
+     */
+    public List<String> getStageNames() {
+        return new ArrayList<>(names);
+    }
+
+    /**
+     * @return one line per stage with the count, p50, p99 and max of the last finished interval in milliseconds
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("Latency (ms)");
+        for (String name : names) {
+            builder.append("\n  ").append(format(name, getInterval(name)));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * @return the count, p50, p99 and max of a histogram in milliseconds
+     */
+    public static String format(String name, LatencyHistogram histogram) {
+        return String.format("%-14s n=%-5d p50=%7.2f p99=%7.2f max=%7.2f", name, histogram.getCount(),
+                histogram.getValueAtPercentile(50) / 1e6, histogram.getValueAtPercentile(99) / 1e6,
+                histogram.getMax() / 1e6);
+    }
+
+    private static class Stage {
+        private volatile LatencyHistogram current = new LatencyHistogram();
+        private volatile LatencyHistogram finished = new LatencyHistogram();
+        // Interval before the finished one, kept until the next rollover for readers still holding it
+        private LatencyHistogram spare = new LatencyHistogram();
+
+        private synchronized void rollover() {
+            LatencyHistogram ended = current;
+            spare.reset();
+            current = spare;
+            spare = finished;
+            finished = ended;
+        }
+    }
+}
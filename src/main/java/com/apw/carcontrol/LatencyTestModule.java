@@ -1,20 +1,62 @@
 package com.apw.carcontrol;
 
+import java.awt.Color;
 import java.awt.Graphics;
+import java.awt.event.KeyEvent;
 
+/**
+ * Records the time between frames, and draws the latency of every stage
+ * of the last LatencyMonitor interval over the camera image.
+ * The overlay is toggled with L.
+ */
 public class LatencyTestModule implements Module {
+	// Time between two calls to update
+	public static final String FRAME_INTERVAL = "FRAME_INTERVAL";
+
+	private static final int LINE_HEIGHT = 14;
+
 	private long lastTime = -1;
+	private volatile boolean overlay;
+
+	public LatencyTestModule(boolean overlay) {
+		this.overlay = overlay;
+	}
+
+	@Override
+	public void initialize(CarControl control) {
+		control.addKeyEvent(KeyEvent.VK_L, () -> overlay = !overlay);
+	}
 
 	@Override
 	public void update(CarControl control) {
-		long time = System.currentTimeMillis();
+		long time = System.nanoTime();
 		if(lastTime != -1) {
-			//System.out.println("Time since last run cycle: " + (time - lastTime) + "ms.");
+			LatencyMonitor.getInstance().record(FRAME_INTERVAL, time - lastTime);
 		}
 		lastTime = time;
 	}
 
 	@Override
-	public void paint(CarControl control, Graphics g) {		
+	public void paint(CarControl control, Graphics g) {
+		if (!overlay || g == null) {
+			return;
+		}
+		LatencyMonitor monitor = LatencyMonitor.getInstance();
+		int x = control.getEdges() != null ? control.getEdges().left + 5 : 5;
+		int y = (control.getEdges() != null ? control.getEdges().top : 0) + LINE_HEIGHT;
+		g.setColor(Color.YELLOW);
+		g.drawString("Latency (ms)", x, y);
+		for (String stage : monitor.getStageNames()) {
+			y += LINE_HEIGHT;
+			g.drawString(LatencyMonitor.format(stage, monitor.getInterval(stage)), x, y);
+		}
+	}
+
+	public boolean isOverlay() {
+		return overlay;
+	}
+
+	public void setOverlay(boolean overlay) {
+		this.overlay = overlay;
 	}
 }
@@ -1,5 +1,7 @@
 package com.apw.carcontrol;
 
+import com.apw.imagemanagement.FrameContext;
+
 import java.awt.*;
 
 public interface Module {
@@ -18,6 +20,17 @@ public interface Module {
      */
     void update(CarControl control);
 
+    /**
+     * Update the CarControl with new data from a decoded frame. Modules that read images read them
+     * from the frame instead of the CarControl, so stages working on different frames at once do not share them.
+     *
+     * @param control The CarControl to update.
+     * @param frame The frame to read images from.
+     */
+    default void update(CarControl control, FrameContext frame) {
+        update(control);
+    }
+
     /**
      * Draws on the screen based on info from the CarControl.
      *
@@ -1,5 +1,7 @@
 package com.apw.carcontrol;
 
+import com.apw.imagemanagement.FrameContext;
+import com.apw.imagemanagement.FrameRecorder;
 import com.apw.imagemanagement.ImageManagementModule;
 import com.apw.sbcio.PWMController;
 import com.apw.sbcio.fakefirm.ArduinoIO;
@@ -11,15 +13,13 @@ import com.apw.steering.SteeringModule;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
 
+import java.io.File;
+
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
@@ -28,12 +28,6 @@ import org.jetbrains.annotations.NotNull;
 
 public class MrModule extends JFrame implements Runnable, KeyListener {
 
-    private ExecutorService steeringExec = Executors.newSingleThreadExecutor(new NamedThreadFactory("steering"));
-    private ExecutorService speedExec = Executors.newSingleThreadExecutor(new NamedThreadFactory("speed"));
-    private ExecutorService imageRGBExec = Executors.newSingleThreadExecutor(new NamedThreadFactory("imageRGB"));
-    private ExecutorService imageBWExec = Executors.newSingleThreadExecutor(new NamedThreadFactory("imageBW"));
-    private ExecutorService imageSimpleExec = Executors.newSingleThreadExecutor(new NamedThreadFactory("imageSimple"));
-    private ExecutorService cameraImageExec = Executors.newSingleThreadExecutor(new NamedThreadFactory("cameraReader"));
     private PWMController driveSys = new ArduinoIO();
     private List<Module> modules = new ArrayList<>(); // Contains each module
     private final WindowModule windowModule;
@@ -41,17 +35,37 @@ public class MrModule extends JFrame implements Runnable, KeyListener {
     private final ImageManagementModule imageManagementModule;
     private final SpeedControlModule speedControlModule;
     private final SteeringModule steeringModule;
+    private final LatencyTestModule latencyTestModule;
+    private final FrameRecorder frameRecorder;
+    private final LatencyMonitor latencyMonitor = LatencyMonitor.getInstance();
     private final CarControl carControl; // A CarControl that holds data for each module
     //private CarControl speedControl; // A CarControl that holds data specifically for speed
     private CarControl steeringControl; // A CarControl that holds data specifically for steering
+    private final FramePipeline<FrameContext> pipeline;
     private long frameNumber = 0L;
-    private long lastTime = 0L;
 
     private boolean initialized = false;
 
     private static final int FPS = 50; // Number of frames per second run is called
     private static final int initDelay = 100; // Initial delay before run is called
 
+    // Time after capture each stage's result is still used, in milliseconds
+    private static final long DECODE_DEADLINE = 40;
+    private static final long STEERING_DEADLINE = 60;
+    private static final long SPEED_DEADLINE = 100;
+    private static final long RENDER_DEADLINE = 100;
+
+    // How often the stage latencies are collected and printed, in milliseconds
+    private static final long LATENCY_PERIOD = 5000;
+    private static final boolean PRINT_LATENCY = false;
+    private static final boolean SHOW_LATENCY_OVERLAY = false;
+
+    // Saves camera frames for the benchmarks, one every RECORD_INTERVAL frames
+    private static final boolean RECORD_FRAMES = false;
+    private static final String RECORD_DIRECTORY = "frames";
+    private static final int RECORD_INTERVAL = 10;
+    private static final int RECORD_LIMIT = 64;
+
     private MrModule(boolean realCam, boolean hasWindow) {
         if (realCam) {
             carControl = new CamControl(driveSys);
@@ -73,27 +87,24 @@ public class MrModule extends JFrame implements Runnable, KeyListener {
         imageManagementModule = new ImageManagementModule(winWidth, winHeight, carControl.getTile());
         speedControlModule = new SpeedControlModule();
         steeringModule = new SteeringModule();
+        latencyTestModule = new LatencyTestModule(SHOW_LATENCY_OVERLAY);
+        frameRecorder = RECORD_FRAMES ? new FrameRecorder(new File(RECORD_DIRECTORY), RECORD_INTERVAL, RECORD_LIMIT) : null;
 
-        initializeModules(windowModule, arduinoModule, imageManagementModule, speedControlModule, steeringModule);
+        initializeModules(windowModule, arduinoModule, imageManagementModule, speedControlModule, steeringModule,
+                latencyTestModule);
 
+        pipeline = createPipeline();
         headlessInit();
     }
 
     /**
-     * Gets called once, and starts the executor service to call run every FPS
+     * Gets called once, starts the pipeline and the executor service to call run every FPS
      */
     private void headlessInit() {
-        // driveSys = new ArduinoIO();
+        latencyMonitor.start(LATENCY_PERIOD, PRINT_LATENCY ? System.out : null);
+        pipeline.start();
         final ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("Frame Scheduler"));
         executorService.scheduleAtFixedRate(this, initDelay, Math.round(1000.0 / FPS), TimeUnit.MILLISECONDS);
-
-        Future run = executorService.submit(this);
-
-        try {
-            run.get();
-        } catch (InterruptedException | ExecutionException e) {
-            e.printStackTrace();
-        }
     }
 
     private void initializeModules(Module... moduleArray) {
@@ -119,74 +130,86 @@ public class MrModule extends JFrame implements Runnable, KeyListener {
 
     /**
      * <p>
-     * Update method is called once every FPS.
-     * Method calls and manages each module's update. Specifically, ImageManagement, Speed and steering.
-     * ImageManagement, speed and steering are each in their own thread. Speed and steering
-     * run after ImageManagement process their respective image.
+     * Builds the stages every frame goes through, each in its own thread.
+     * The camera is read, then ImageManagement decodes every image needed for the frame in one pass,
+     * then steering, speed and the window run on their respective image.
+     * A stage that falls behind skips to the newest frame, and results older than a stage's deadline are dropped,
+     * so steering always works on a recent image.
      * </p>
      */
-    private void update(long frameNumber) {
-        //read the camera image, and update windowModule.
-        CompletableFuture<Void> cameraImage = CompletableFuture
-                .runAsync(() -> {
-                            carControl.readCameraImage();
-                            carControl.setEdges(getInsets());
-                            windowModule.update(carControl);
-                            arduinoModule.update(carControl);
-                        }, cameraImageExec);
-
-        // FIXME: Does not print exceptions to console.
-
-        final byte[] recentImage = carControl.getRecentCameraImage();
-
-        // Start Thread to get the black and white image (for steering)
-        CompletableFuture<Void> futureSteering = cameraImage
-                .thenApplyAsync(v -> setBWImage(recentImage), imageBWExec)
-                // Call steering Module after futureBWImage is finished
-                .thenAcceptAsync(steeringModule::update, steeringExec);
-
-        CompletableFuture<CarControl> futureRGBImage = CompletableFuture.completedFuture(null);
-        if (frameNumber % 1 == 0) {
-            futureRGBImage = cameraImage
-                    .thenApplyAsync(v -> setRGBImage(recentImage), imageRGBExec);
-        }
-
-        // Call speed module after futureSimpleImage is finished
-        CompletableFuture<Void> futureSpeed = CompletableFuture.completedFuture(null);
-        if (frameNumber % 3 == 1) {
-            // Start Thread to get the simple image (for speed)
-            futureSpeed = cameraImage
-                    .thenApplyAsync(v -> setSimpleImage(recentImage), imageSimpleExec)
-                    .thenAcceptAsync(speedControlModule::update, speedExec);
-        }
-
-        // Run when all finished.
-        CompletableFuture.allOf(futureSpeed, futureSteering, futureRGBImage)
-                .thenAccept(v -> paint())
-                .exceptionally(ex -> {
-                    ex.printStackTrace();
-                    return null;
-                })
-                .join();
-
+    private FramePipeline<FrameContext> createPipeline() {
+        // The camera image and planes of a frame are reused once every stage is done with it
+        FramePipeline<FrameContext> frames = new FramePipeline<>(number -> {
+            imageManagementModule.releaseFrame(number);
+            carControl.releaseCameraImage(number);
+        });
+
+        // The camera image is read into a buffer that later reads leave alone until the frame is released
+        FramePipeline<FrameContext>.Stage capture = frames.addSource("cameraReader", 0, (number, frame) -> {
+            long start = System.nanoTime();
+            byte[] image = carControl.readCameraImage();
+            long captureNanos = System.nanoTime();
+            latencyMonitor.record(LatencyMonitor.CAPTURE, captureNanos - start);
+            carControl.holdCameraImage(number);
+            carControl.setEdges(getInsets());
+            windowModule.update(carControl);
+            arduinoModule.update(carControl);
+            latencyTestModule.update(carControl);
+            if (frameRecorder != null) {
+                frameRecorder.update(carControl);
+            }
+            return new FrameContext(number, captureNanos, image);
+        });
+
+        // Decode every plane needed this frame in a single pass over the camera image
+        FramePipeline<FrameContext>.Stage decode = frames.addStage("imageDecode", DECODE_DEADLINE, (number, frame) -> {
+            int planes = ImageManagementModule.PLANE_BLACK_WHITE;
+            if (steeringModule.usesMask()) {
+                planes |= ImageManagementModule.PLANE_BLACK_WHITE_MASK;
+            }
+            if (number % 3 == 1) {
+                planes |= ImageManagementModule.PLANE_SIMPLE_COLOR;
+            }
+            return imageManagementModule.decodeFrame(frame, planes);
+        }, capture);
+
+        // Call steering Module after the black and white image (for steering) is decoded
+        // Steering and speed read their images from the frame, the shared control only takes their commands
+        // Steering ends at the servo command, so its end is the camera to actuator latency
+        frames.addStage("steering", STEERING_DEADLINE, (number, frame) -> {
+            long start = System.nanoTime();
+            steeringModule.update(steeringControl, frame);
+            latencyMonitor.recordSince(LatencyMonitor.STEERING, start);
+            latencyMonitor.recordSince(LatencyMonitor.END_TO_END, frame.getCaptureNanos());
+            return frame;
+        }, decode);
+
+        // Call speed module on the frames with a simple image (for speed)
+        frames.addStage("speed", SPEED_DEADLINE, (number, frame) -> {
+            if (frame.getSimpleColor() != null) {
+                long start = System.nanoTime();
+                speedControlModule.update(steeringControl, frame);
+                latencyMonitor.recordSince(LatencyMonitor.SPEED, start);
+            }
+            return frame;
+        }, decode);
+
+        frames.addStage("render", RENDER_DEADLINE, (number, frame) -> {
+            setRGBImage(frame);
+            long start = System.nanoTime();
+            paint();
+            latencyMonitor.recordSince(LatencyMonitor.PAINT, start);
+            return frame;
+        }, decode);
+        return frames;
     }
 
-    private CarControl setRGBImage(byte[] recentImage) {
-        carControl.setRGBImage(imageManagementModule.getBlackWhiteRaster(recentImage));
+    private CarControl setRGBImage(FrameContext frame) {
+        carControl.setRGBImage(frame.getBlackWhite());
         carControl.setRenderedImage(carControl.getRGBImage());
         return carControl;
     }
 
-    private CarControl setBWImage(byte[] recentImage) {
-        steeringControl.setRGBImage(imageManagementModule.getBlackWhiteRaster(recentImage));
-        return steeringControl;
-    }
-
-    private CarControl setSimpleImage(byte[] recentImage) {
-        steeringControl.setProcessedImage(imageManagementModule.getSimpleColorRaster(recentImage));
-        return steeringControl;
-    }
-
     private void paint() {
         if (!modules.isEmpty()) {
             for (Module module : modules) {
@@ -198,25 +221,14 @@ public class MrModule extends JFrame implements Runnable, KeyListener {
     @Override
     public void run() {
         if (initialized) {
-            //printElapsedTime();
             try {
-                update(++frameNumber);
-                //paint();
+                pipeline.submit(++frameNumber);
             } catch (Exception e) {
                 e.printStackTrace();
             }
         }
     }
 
-    private void printElapsedTime() {
-        final long curTime = System.currentTimeMillis();
-        if (lastTime == 0) {
-            lastTime = curTime;
-        }
-        System.out.println("Time: " + (lastTime - curTime));
-        lastTime = curTime;
-    }
-
     public static void main(String[] args) {
         boolean realcam = true;
         boolean window = true;
@@ -16,7 +16,7 @@ public class TrakSimControl extends CarControlBase {
             return super.readCameraImage();
         } catch (IllegalStateException ex) {
             System.err.println("An error occurred in TrakSimControl while reading the camera image from SimCamera.");
-            return getRecentCameraImage();
+            return repeatCameraImage();
         }
     }
 }
@@ -76,7 +76,7 @@ public class BlackWhiteRasterKernel extends Kernel {
         if (col == 0)
             averageLuminance /= ncols;
 
-        if (col < ncols) {
+        if (col + 1 < ncols) {
             int R1 = (bayer[getPos(col, row, combineTile((byte) 0, tile), ncols, nrows)] & 0xFF);
             int G1 = (bayer[getPos(col, row, combineTile((byte) 1, tile), ncols, nrows)] & 0xFF);
             int B1 = (bayer[getPos(col, row, combineTile((byte) 3, tile), ncols, nrows)] & 0xFF);
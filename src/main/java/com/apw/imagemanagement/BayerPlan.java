@@ -0,0 +1,83 @@
+package com.apw.imagemanagement;
+
+/**
+ * Precomputed channel offsets for reading a camera image with a given tiling and size.
+ * Replaces calling ImageManipulator.getPos for every channel of every pixel, so a pixel's
+ * red, green and blue values are read from pixelIndex(r, c) plus a fixed offset.
+ *
+ * @see ImageManipulator#getPos(int, int, byte, int, int)
+ */
+public class BayerPlan {
+
+    private final byte tile;
+    private final int ncols, nrows;
+    private final int rowStride, colStride;
+    private final int redOffset, greenOffset, green2Offset, blueOffset;
+
+    /**
+     * Builds the offsets for an image
+     * @param tile tiling pattern of the image: See ImageManipulator.getPos()
+     * @param ncols number of columns of pixels in the image
+     * @param nrows number of rows of pixels in the image
+     */
+    public BayerPlan(byte tile, int ncols, int nrows) {
+        this.tile = tile;
+        this.ncols = ncols;
+        this.nrows = nrows;
+
+        //getPos is linear in x and y, so its offsets and strides can be read off once
+        byte redTile = ImageManipulator.combineTile((byte) 0, tile);
+        redOffset = ImageManipulator.getPos(0, 0, redTile, ncols, nrows);
+        greenOffset = ImageManipulator.getPos(0, 0, ImageManipulator.combineTile((byte) 1, tile), ncols, nrows);
+        green2Offset = ImageManipulator.getPos(0, 0, ImageManipulator.combineTile((byte) 2, tile), ncols, nrows);
+        blueOffset = ImageManipulator.getPos(0, 0, ImageManipulator.combineTile((byte) 3, tile), ncols, nrows);
+        colStride = ImageManipulator.getPos(1, 0, redTile, ncols, nrows) - redOffset;
+        rowStride = ImageManipulator.getPos(0, 1, redTile, ncols, nrows) - redOffset;
+    }
+
+    /**
+     * Index of the tile holding pixel (r, c), add a channel offset to read a channel
+     * @param r row of the pixel
+     * @param c column of the pixel
+     * @return index into the image
+     */
+    public int pixelIndex(int r, int c) {
+        return r * rowStride + c * colStride;
+    }
+
+    public byte getTile() {
+        return tile;
+    }
+
+    public int getNcols() {
+        return ncols;
+    }
+
+    public int getNrows() {
+        return nrows;
+    }
+
+    public int getRowStride() {
+        return rowStride;
+    }
+
+    public int getColStride() {
+        return colStride;
+    }
+
+    public int getRedOffset() {
+        return redOffset;
+    }
+
+    public int getGreenOffset() {
+        return greenOffset;
+    }
+
+    public int getGreen2Offset() {
+        return green2Offset;
+    }
+
+    public int getBlueOffset() {
+        return blueOffset;
+    }
+}
@@ -0,0 +1,274 @@
+package com.apw.imagemanagement;
+
+import java.util.Arrays;
+
+/**
+ * Black and white image packed 64 pixels to a long, one bit per pixel.
+ * Bit i of word w in a row is the pixel in column w * 64 + i, and every row starts on a new word.
+ *
+ * Erosion and dilation work on whole words with shifts, ANDs and ORs instead of testing
+ * each neighbor of each pixel, and lane searches can skip 64 black pixels at a time.
+ *
+ * @see ImageManipulator#convertToBlackWhiteMask(byte[], BitMask, BayerPlan, RegionOfInterest)
+ */
+public class BitMask {
+
+    private static final int WORD_BITS = 64;
+    private static final int WORD_SHIFT = 6;
+    private static final long ALL_SET = -1L;
+
+    private final int width, height;
+    private final int wordsPerRow;
+    private final long[] words;
+    //rows around the one being eroded or dilated, kept so morphology does not allocate
+    private long[] above, current, below;
+
+    /**
+     * Creates an all black mask
+     * @param width number of columns of pixels
+     * @param height number of rows of pixels
+     */
+    public BitMask(int width, int height) {
+        this.width = width;
+        this.height = height;
+        wordsPerRow = (width + WORD_BITS - 1) >> WORD_SHIFT;
+        words = new long[wordsPerRow * height];
+    }
+
+    /**
+     * Packs a black and white raster, every pixel equal to white is set
+     * @param pixels black and white raster, formatted in 1D array of integers 0xRRGGBB
+     * @param width number of columns of pixels
+     * @param height number of rows of pixels
+     * @param white value of a white pixel
+     * @return mask of the white pixels
+     */
+    public static BitMask fromRaster(int[] pixels, int width, int height, int white) {
+        BitMask mask = new BitMask(width, height);
+        for (int r = 0; r < height; r++) {
+            for (int c = 0; c < width; c++) {
+                if (pixels[r * width + c] == white) {
+                    mask.set(c, r);
+                }
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Unpacks the mask into a black and white raster
+     * @param pixels output, formatted in 1D array of integers 0xRRGGBB
+     * @param white value written for set pixels, unset pixels are written as 0
+     */
+    public void toRaster(int[] pixels, int white) {
+        for (int r = 0; r < height; r++) {
+            for (int c = 0; c < width; c++) {
+                pixels[r * width + c] = get(c, r) ? white : 0;
+            }
+        }
+    }
+
+    public boolean get(int x, int y) {
+        return (words[y * wordsPerRow + (x >> WORD_SHIFT)] & (1L << x)) != 0;
+    }
+
+    public void set(int x, int y) {
+        words[y * wordsPerRow + (x >> WORD_SHIFT)] |= 1L << x;
+    }
+
+    public void clear(int x, int y) {
+        words[y * wordsPerRow + (x >> WORD_SHIFT)] &= ~(1L << x);
+    }
+
+    /**
+     * Sets every pixel black
+     */
+    public void clear() {
+        Arrays.fill(words, 0L);
+    }
+
+    /**
+     * Copies every pixel of another mask of the same size
+     * @param other mask to copy
+     */
+    public void copyFrom(BitMask other) {
+        System.arraycopy(other.words, 0, words, 0, words.length);
+    }
+
+    /**
+     * Replaces one word of a row, used by conversions that pack 64 pixels at a time
+     * @param y row of the word
+     * @param wordIndex index of the word in the row
+     * @param word the 64 pixels starting at column wordIndex * 64
+     */
+    public void setWord(int y, int wordIndex, long word) {
+        words[y * wordsPerRow + wordIndex] = word;
+    }
+
+    public long getWord(int y, int wordIndex) {
+        return words[y * wordsPerRow + wordIndex];
+    }
+
+    /**
+     * Finds the nearest set pixel at or right of x in row y
+     * @param y row to search
+     * @param x first column to search
+     * @return column of the pixel, or -1 if there is none
+     */
+    public int nextSetBitRight(int y, int x) {
+        if (x < 0) {
+            x = 0;
+        }
+        if (x >= width) {
+            return -1;
+        }
+        int rowStart = y * wordsPerRow;
+        int w = x >> WORD_SHIFT;
+        long word = words[rowStart + w] & (ALL_SET << x);
+        while (word == 0) {
+            if (++w == wordsPerRow) {
+                return -1;
+            }
+            word = words[rowStart + w];
+        }
+        int column = (w << WORD_SHIFT) + Long.numberOfTrailingZeros(word);
+        return column < width ? column : -1;
+    }
+
+    /**
+     * Finds the nearest set pixel at or left of x in row y
+     * @param y row to search
+     * @param x first column to search
+     * @return column of the pixel, or -1 if there is none
+     */
+    public int nextSetBitLeft(int y, int x) {
+        if (x < 0) {
+            return -1;
+        }
+        if (x >= width) {
+            x = width - 1;
+        }
+        int rowStart = y * wordsPerRow;
+        int w = x >> WORD_SHIFT;
+        long word = words[rowStart + w] & (ALL_SET >>> (WORD_BITS - 1 - (x & (WORD_BITS - 1))));
+        while (word == 0) {
+            if (--w < 0) {
+                return -1;
+            }
+            word = words[rowStart + w];
+        }
+        return (w << WORD_SHIFT) + WORD_BITS - 1 - Long.numberOfLeadingZeros(word);
+    }
+
+    /**
+     * Erodes the mask with a 3x3 square, a pixel stays set only if it and all 8 neighbors are set.
+     * Pixels outside the image count as unset.
+     * @param output eroded mask, the same size as this one
+     * @param region rows and columns to erode, output is cleared outside it
+     */
+    public void erode(BitMask output, RegionOfInterest region) {
+        if (above == null) {
+            above = new long[wordsPerRow];
+            current = new long[wordsPerRow];
+            below = new long[wordsPerRow];
+        }
+        output.clear();
+        int firstRow = region.getFirstRow();
+        horizontal(firstRow - 1, above, true);
+        horizontal(firstRow, current, true);
+        for (int r = firstRow; r < region.getLastRow(); r++) {
+            horizontal(r + 1, below, true);
+            for (int w = 0; w < wordsPerRow; w++) {
+                output.words[r * wordsPerRow + w] = above[w] & current[w] & below[w] & regionMask(region, w);
+            }
+            long[] recycled = above;
+            above = current;
+            current = below;
+            below = recycled;
+        }
+    }
+
+    /**
+     * Dilates the mask with a 3x3 square, a pixel is set if it or any of its 8 neighbors is set
+     * @param output dilated mask, the same size as this one
+     * @param region rows and columns to dilate, output is cleared outside it
+     */
+    public void dilate(BitMask output, RegionOfInterest region) {
+        if (above == null) {
+            above = new long[wordsPerRow];
+            current = new long[wordsPerRow];
+            below = new long[wordsPerRow];
+        }
+        output.clear();
+        int firstRow = region.getFirstRow();
+        horizontal(firstRow - 1, above, false);
+        horizontal(firstRow, current, false);
+        for (int r = firstRow; r < region.getLastRow(); r++) {
+            horizontal(r + 1, below, false);
+            for (int w = 0; w < wordsPerRow; w++) {
+                output.words[r * wordsPerRow + w] = (above[w] | current[w] | below[w]) & regionMask(region, w);
+            }
+            long[] recycled = above;
+            above = current;
+            current = below;
+            below = recycled;
+        }
+    }
+
+    /**
+     * Combines each pixel of a row with its left and right neighbors
+     * @param y row to combine, rows outside the image are all unset
+     * @param out combined row
+     * @param and true to AND the neighbors (erosion), false to OR them (dilation)
+     */
+    private void horizontal(int y, long[] out, boolean and) {
+        if (y < 0 || y >= height) {
+            Arrays.fill(out, 0L);
+            return;
+        }
+        int rowStart = y * wordsPerRow;
+        for (int w = 0; w < wordsPerRow; w++) {
+            long center = words[rowStart + w];
+            long previous = w > 0 ? words[rowStart + w - 1] : 0L;
+            long next = w + 1 < wordsPerRow ? words[rowStart + w + 1] : 0L;
+            //bit i of left holds pixel i - 1, bit i of right holds pixel i + 1
+            long left = (center << 1) | (previous >>> (WORD_BITS - 1));
+            long right = (center >>> 1) | (next << (WORD_BITS - 1));
+            out[w] = and ? center & left & right : center | left | right;
+        }
+        //pixels past the last column are outside the image
+        out[wordsPerRow - 1] &= columnsBefore(width - ((wordsPerRow - 1) << WORD_SHIFT));
+    }
+
+    private static long regionMask(RegionOfInterest region, int w) {
+        int wordStart = w << WORD_SHIFT;
+        long mask = columnsBefore(region.getLastCol() - wordStart);
+        return mask & ~columnsBefore(region.getFirstCol() - wordStart);
+    }
+
+    /**
+     * @param columns number of columns from the start of a word
+     * @return word with the first columns bits set
+     */
+    private static long columnsBefore(int columns) {
+        if (columns <= 0) {
+            return 0L;
+        }
+        if (columns >= WORD_BITS) {
+            return ALL_SET;
+        }
+        return (1L << columns) - 1;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getWordsPerRow() {
+        return wordsPerRow;
+    }
+}
@@ -0,0 +1,91 @@
+package com.apw.imagemanagement;
+
+/**
+ * Thresholds used to classify a pixel into a simple color.
+ * Unlike SimpleThresholds these can be changed while the car is running,
+ * by building a new ColorThresholds and handing it to ImageManagementModule.setColorThresholds().
+ * Instances never change, so one can be shared between threads.
+ *
+ * @see ImageManipulator#classifySimpleColor(int, int, int, ColorThresholds)
+ */
+public class ColorThresholds {
+
+    /**
+     * The thresholds in SimpleThresholds
+     */
+    public static final ColorThresholds DEFAULT = new ColorThresholds(
+            SimpleThresholds.redGreen, SimpleThresholds.redBlue,
+            SimpleThresholds.greenRed, SimpleThresholds.greenBlue,
+            SimpleThresholds.blueRed, SimpleThresholds.blueGreen,
+            SimpleThresholds.yellowDiff, SimpleThresholds.yellowBlue,
+            SimpleThresholds.whitePoint, SimpleThresholds.greyPoint);
+
+    private final int redGreen, redBlue;
+    private final int greenRed, greenBlue;
+    private final int blueRed, blueGreen;
+    private final int yellowDiff, yellowBlue;
+    private final int whitePoint, greyPoint;
+
+    public ColorThresholds(int redGreen, int redBlue, int greenRed, int greenBlue, int blueRed, int blueGreen,
+                           int yellowDiff, int yellowBlue, int whitePoint, int greyPoint) {
+        this.redGreen = redGreen;
+        this.redBlue = redBlue;
+        this.greenRed = greenRed;
+        this.greenBlue = greenBlue;
+        this.blueRed = blueRed;
+        this.blueGreen = blueGreen;
+        this.yellowDiff = yellowDiff;
+        this.yellowBlue = yellowBlue;
+        this.whitePoint = whitePoint;
+        this.greyPoint = greyPoint;
+    }
+
+    public int getRedGreen() {
+        return redGreen;
+    }
+
+    public int getRedBlue() {
+        return redBlue;
+    }
+
+    public int getGreenRed() {
+        return greenRed;
+    }
+
+    public int getGreenBlue() {
+        return greenBlue;
+    }
+
+    public int getBlueRed() {
+        return blueRed;
+    }
+
+    public int getBlueGreen() {
+        return blueGreen;
+    }
+
+    public int getYellowDiff() {
+        return yellowDiff;
+    }
+
+    public int getYellowBlue() {
+        return yellowBlue;
+    }
+
+    public int getWhitePoint() {
+        return whitePoint;
+    }
+
+    public int getGreyPoint() {
+        return greyPoint;
+    }
+
+    @Override
+    public String toString() {
+        return "ColorThresholds redGreen: " + redGreen + " redBlue: " + redBlue
+                + " greenRed: " + greenRed + " greenBlue: " + greenBlue
+                + " blueRed: " + blueRed + " blueGreen: " + blueGreen
+                + " yellowDiff: " + yellowDiff + " yellowBlue: " + yellowBlue
+                + " whitePoint: " + whitePoint + " greyPoint: " + greyPoint;
+    }
+}
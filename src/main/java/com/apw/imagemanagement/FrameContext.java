@@ -0,0 +1,119 @@
+package com.apw.imagemanagement;
+
+/**
+ * Everything known about one camera frame as it moves through the pipeline:
+ * its number, when it was captured, the raw bayer8 image, and the rasters decoded from it.
+ * A FrameContext never changes, decoding makes a new one with withPlanes(),
+ * so stages on different threads can share it without locking.
+ * Planes that were not requested are null.
+ *
+ * @see ImageManagementModule#decodeFrame(FrameContext, int)
+ */
+public class FrameContext {
+
+    private final long frameNumber;
+    private final long captureNanos;
+    private final byte[] bayer;
+    private final int[] blackWhite;
+    private final byte[] simpleColor;
+    private final byte[] monochrome;
+    private final int[] rgb;
+    private final BitMask blackWhiteMask;
+
+    /**
+     * A frame that has not been decoded yet
+     * @param frameNumber number of the frame
+     * @param captureNanos System.nanoTime() when the frame was captured
+     * @param bayer bayer8 image of the frame
+     */
+    public FrameContext(long frameNumber, long captureNanos, byte[] bayer) {
+        this(frameNumber, captureNanos, bayer, null, null, null, null, null);
+    }
+
+    private FrameContext(long frameNumber, long captureNanos, byte[] bayer,
+                         int[] blackWhite, byte[] simpleColor, byte[] monochrome, int[] rgb, BitMask blackWhiteMask) {
+        this.frameNumber = frameNumber;
+        this.captureNanos = captureNanos;
+        this.bayer = bayer;
+        this.blackWhite = blackWhite;
+        this.simpleColor = simpleColor;
+        this.monochrome = monochrome;
+        this.rgb = rgb;
+        this.blackWhiteMask = blackWhiteMask;
+    }
+
+    /**
+     * @return the same frame with the given decoded planes
+     */
+    public FrameContext withPlanes(int[] blackWhite, byte[] simpleColor, byte[] monochrome, int[] rgb) {
+        return new FrameContext(frameNumber, captureNanos, bayer, blackWhite, simpleColor, monochrome, rgb,
+                blackWhiteMask);
+    }
+
+    /**
+     * @return the same frame with the given black and white mask
+     */
+    public FrameContext withBlackWhiteMask(BitMask blackWhiteMask) {
+        return new FrameContext(frameNumber, captureNanos, bayer, blackWhite, simpleColor, monochrome, rgb,
+                blackWhiteMask);
+    }
+
+    public long getFrameNumber() {
+        return frameNumber;
+    }
+
+    /**
+     * @return System.nanoTime() when the frame was captured
+     */
+    public long getCaptureNanos() {
+        return captureNanos;
+    }
+
+    /**
+     * Raw camera image, must not be changed
+     * @return bayer8 image of the frame
+     */
+    public byte[] getBayer() {
+        return bayer;
+    }
+
+    /**
+     * Black and white raster, formatted in 1D array of integers 0xRRGGBB
+     * @return black and white image, or null if it was not requested
+     */
+    public int[] getBlackWhite() {
+        return blackWhite;
+    }
+
+    /**
+     * Simple color raster, formatted in 1D array of values 0-6
+     * @return simple image, or null if it was not requested
+     */
+    public byte[] getSimpleColor() {
+        return simpleColor;
+    }
+
+    /**
+     * Monochrome raster, formatted in 1D array of bytes
+     * @return monochrome image, or null if it was not requested
+     */
+    public byte[] getMonochrome() {
+        return monochrome;
+    }
+
+    /**
+     * RGB raster, formatted in 1D array of integers 0xRRGGBB
+     * @return RGB image, or null if it was not requested
+     */
+    public int[] getRGB() {
+        return rgb;
+    }
+
+    /**
+     * Black and white mask, packed 64 pixels to a long
+     * @return black and white mask, or null if it was not requested
+     */
+    public BitMask getBlackWhiteMask() {
+        return blackWhiteMask;
+    }
+}
@@ -0,0 +1,194 @@
+package com.apw.imagemanagement;
+
+import java.util.Arrays;
+
+/**
+ * Reuses the rasters produced for each frame instead of allocating new ones.
+ * Every plane type has its own ring of buffers. A buffer is acquired for a frame number
+ * and stays out of the pool until that frame is released, after which it is handed out
+ * again, cleared, to a later frame.
+ *
+ * When every buffer of a plane is still held the pool falls back to allocating a buffer
+ * that is not kept, so a slow consumer costs garbage rather than a corrupted frame.
+ *
+ * @see ImageManagementModule#decodeFrame(FrameContext, int)
+ */
+public class FramePool {
+
+    /**
+     * Plane types kept by the pool, each in its own ring
+     */
+    public enum Plane {
+        BLACK_WHITE,
+        SIMPLE_COLOR,
+        MONOCHROME,
+        RGB,
+        BLACK_WHITE_MASK
+    }
+
+    private static final long FREE = -1L;
+    //kinds of buffer acquire() hands out
+    private static final int INTS = 0;
+    private static final int BYTES = 1;
+    private static final int MASK = 2;
+
+    private final int capacity;
+    private final Object[][] buffers;
+    private final long[][] owners;
+    private final int[] cursors;
+
+    private long hits = 0L;
+    private long misses = 0L;
+    private int outstanding = 0;
+
+    /**
+     * @param capacity number of buffers kept for each plane type
+     */
+    public FramePool(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("FramePool capacity must be positive: " + capacity);
+        }
+        int planes = Plane.values().length;
+        this.capacity = capacity;
+        buffers = new Object[planes][capacity];
+        owners = new long[planes][capacity];
+        cursors = new int[planes];
+        for (long[] planeOwners : owners) {
+            Arrays.fill(planeOwners, FREE);
+        }
+    }
+
+    /**
+     * Takes a cleared int buffer out of the pool
+     * @param plane plane type the buffer is used for
+     * @param frameNumber frame the buffer belongs to, see release()
+     * @param size number of pixels in the buffer
+     * @return a buffer of the given size filled with zeros
+     */
+    public synchronized int[] acquireInts(Plane plane, long frameNumber, int size) {
+        int[] buffer = (int[]) acquire(plane, frameNumber, INTS, size, 1);
+        Arrays.fill(buffer, 0);
+        return buffer;
+    }
+
+    /**
+     * Takes a cleared byte buffer out of the pool
+     * @param plane plane type the buffer is used for
+     * @param frameNumber frame the buffer belongs to, see release()
+     * @param size number of pixels in the buffer
+     * @return a buffer of the given size filled with zeros
+     */
+    public synchronized byte[] acquireBytes(Plane plane, long frameNumber, int size) {
+        byte[] buffer = (byte[]) acquire(plane, frameNumber, BYTES, size, 1);
+        Arrays.fill(buffer, (byte) 0);
+        return buffer;
+    }
+
+    /**
+     * Takes a cleared mask out of the pool
+     * @param plane plane type the mask is used for
+     * @param frameNumber frame the mask belongs to, see release()
+     * @param width number of columns of pixels
+     * @param height number of rows of pixels
+     * @return an all black mask of the given size
+     */
+    public synchronized BitMask acquireMask(Plane plane, long frameNumber, int width, int height) {
+        BitMask mask = (BitMask) acquire(plane, frameNumber, MASK, width, height);
+        mask.clear();
+        return mask;
+    }
+
+    private Object acquire(Plane plane, long frameNumber, int kind, int size, int height) {
+        int p = plane.ordinal();
+        for (int i = 0; i < capacity; i++) {
+            int slot = (cursors[p] + i) % capacity;
+            if (owners[p][slot] != FREE) {
+                continue;
+            }
+            Object buffer = buffers[p][slot];
+            if (fits(buffer, kind, size, height)) {
+                hits++;
+            } else {
+                buffer = allocate(kind, size, height);
+                buffers[p][slot] = buffer;
+                misses++;
+            }
+            owners[p][slot] = frameNumber;
+            cursors[p] = (slot + 1) % capacity;
+            outstanding++;
+            return buffer;
+        }
+        //every buffer of this plane is still held
+        misses++;
+        return allocate(kind, size, height);
+    }
+
+    /**
+     * @param size number of pixels, or of columns for a mask
+     * @param height number of rows of a mask
+     */
+    private static boolean fits(Object buffer, int kind, int size, int height) {
+        switch (kind) {
+            case INTS:
+                return buffer instanceof int[] && ((int[]) buffer).length == size;
+            case BYTES:
+                return buffer instanceof byte[] && ((byte[]) buffer).length == size;
+            default:
+                return buffer instanceof BitMask && ((BitMask) buffer).getWidth() == size
+                        && ((BitMask) buffer).getHeight() == height;
+        }
+    }
+
+    private static Object allocate(int kind, int size, int height) {
+        switch (kind) {
+            case INTS:
+                return new int[size];
+            case BYTES:
+                return new byte[size];
+            default:
+                return new BitMask(size, height);
+        }
+    }
+
+    /**
+     * Returns every buffer acquired for a frame to the pool.
+     * The caller must not use those buffers afterwards.
+     * @param frameNumber frame whose buffers are no longer used
+     */
+    public synchronized void release(long frameNumber) {
+        for (long[] planeOwners : owners) {
+            for (int slot = 0; slot < capacity; slot++) {
+                if (planeOwners[slot] == frameNumber) {
+                    planeOwners[slot] = FREE;
+                    outstanding--;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return number of acquires served by an existing buffer
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return number of acquires that had to allocate a buffer
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return number of pooled buffers currently held by unreleased frames
+     */
+    public synchronized int getOutstanding() {
+        return outstanding;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "FramePool hits: " + hits + " misses: " + misses + " outstanding: " + outstanding;
+    }
+}
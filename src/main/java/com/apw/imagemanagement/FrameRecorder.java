@@ -0,0 +1,62 @@
+package com.apw.imagemanagement;
+
+import com.apw.carcontrol.CarControl;
+import com.apw.carcontrol.Module;
+
+import java.awt.Graphics;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Saves camera frames while driving, to be loaded later with RecordedFrames.load()
+ * by the benchmarks and for offline testing.
+ * Every interval-th frame is saved, until limit frames have been saved.
+ */
+public class FrameRecorder implements Module {
+
+    private final File directory;
+    private final int interval;
+    private final int limit;
+    private int seen = 0;
+    private int saved = 0;
+
+    /**
+     * @param directory directory the frames are saved in, created if needed
+     * @param interval save one frame out of this many
+     * @param limit number of frames to save
+     */
+    public FrameRecorder(File directory, int interval, int limit) {
+        this.directory = directory;
+        this.interval = interval;
+        this.limit = limit;
+    }
+
+    @Override
+    public void update(CarControl control) {
+        byte[] bayer = control.getRecentCameraImage();
+        if (bayer == null || saved >= limit || seen++ % interval != 0) {
+            return;
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            System.err.println("Could not create " + directory + ", not recording frames");
+            saved = limit;
+            return;
+        }
+        File file = new File(directory, String.format("frame%05d%s", saved, RecordedFrames.EXTENSION));
+        try {
+            RecordedFrames.write(file, bayer, control.getImageWidth(), control.getImageHeight(), control.getTile());
+            saved++;
+        } catch (IOException e) {
+            e.printStackTrace();
+            saved = limit;
+        }
+    }
+
+    @Override
+    public void paint(CarControl control, Graphics g) {
+    }
+
+    public int getSaved() {
+        return saved;
+    }
+}
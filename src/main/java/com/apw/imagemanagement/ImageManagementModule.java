@@ -1,10 +1,14 @@
 package com.apw.imagemanagement;
 
 import com.apw.carcontrol.CarControl;
+import com.apw.carcontrol.LatencyMonitor;
 import com.apw.carcontrol.Module;
 
 import java.awt.*;
 import java.awt.event.KeyEvent;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.concurrent.Future;
 
 /**
  *  Controls how the image is processed after acquisition by CamControl.
@@ -15,19 +19,68 @@ import java.awt.event.KeyEvent;
  */
 public class ImageManagementModule implements Module {
 
+    //planes that can be requested from decodeFrame
+    public static final int PLANE_BLACK_WHITE = 1;
+    public static final int PLANE_SIMPLE_COLOR = 2;
+    public static final int PLANE_MONOCHROME = 4;
+    public static final int PLANE_RGB = 8;
+    public static final int PLANE_BLACK_WHITE_MASK = 16;
+
+    //buffers kept per plane type, enough for the frame being decoded and the one still in use
+    private static final int FRAME_POOL_CAPACITY = 4;
+    //bits kept of each color channel by the simple color lookup table, a 256KB table that stays in cache.
+    //8 classifies exactly like SimpleThresholds but needs a 16MB table
+    private static final int SIMPLE_COLOR_TABLE_BITS = 6;
+
+    /**
+     * Readers of the decoded planes, each reading only its own region of the image
+     *      STEERING reads the black and white plane
+     *      SPEED reads the simple color plane
+     *      DISPLAY reads the monochrome and rgb planes
+     */
+    public enum Consumer {
+        STEERING,
+        SPEED,
+        DISPLAY
+    }
+
+    /**
+     * Conversions that can be split into row bands and run in parallel
+     */
+    public enum Conversion {
+        DECODE,
+        MONOCHROME,
+        SIMPLE_COLOR,
+        RGB,
+        ROBERTS_CROSS
+    }
+
 	//adjustable variables
     private int viewType = 4;
+    //1 thresholds against the row average, 3 against the average of the window around each pixel
     private int blackWhiteRasterVersion = 1;
+    private int adaptiveWindow = 31;
     private double luminanceMultiplier = 1.6;
+    private int bandHeight = 60;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private volatile EnumSet<Conversion> parallelConversions = EnumSet.of(Conversion.DECODE);
 
 
     //internal variables
     private int width, height;
     private int[] imagePixels;
     private byte tile;
+    private BayerPlan bayerPlan;
     private int frameWidth = 640;
-    boolean removeNoise = true;
-    boolean dilate = false;
+    private Morphology.Operation morphologyOperation = Morphology.Operation.ERODE;
+    private Morphology morphology = new Morphology(3);
+    private final IntegralImage integralImage = new IntegralImage();
+    private BitMask maskScratch; // Other half of each erode or dilate of a black and white mask
+    private final SimpleColorTable simpleColorTable = new SimpleColorTable(SIMPLE_COLOR_TABLE_BITS, ColorThresholds.DEFAULT);
+    private final FramePool framePool = new FramePool(FRAME_POOL_CAPACITY);
+    private long updateFrame = 0L;
+    private volatile RowBandExecutor rowBands;
+    private final EnumMap<Consumer, RegionOfInterest> regions = new EnumMap<>(Consumer.class);
 
     /**
      * Main constructor for imageManagement
@@ -40,6 +93,9 @@ public class ImageManagementModule implements Module {
         this.width = width;
         this.height = height;
         tile = newtile;
+        bayerPlan = new BayerPlan(tile, width, height);
+        rowBands = new RowBandExecutor(parallelism, bandHeight);
+        resetRegions();
 
         //Tells ImageManipulator what the Black/White threshold is
         ImageManipulator.setLuminanceMultiplier(luminanceMultiplier);
@@ -51,6 +107,8 @@ public class ImageManagementModule implements Module {
 
     public void setWidth(int width) {
         this.width = width;
+        bayerPlan = new BayerPlan(tile, width, height);
+        resetRegions();
     }
 
     public int getHeight() {
@@ -59,6 +117,107 @@ public class ImageManagementModule implements Module {
 
     public void setHeight(int height) {
         this.height = height;
+        bayerPlan = new BayerPlan(tile, width, height);
+        resetRegions();
+    }
+
+    /**
+     * Sets every consumer back to the region it reads by default:
+     * steering the lower half of the frame, speed and display the whole frame,
+     * with steering and speed limited to the first frameWidth columns
+     */
+    public synchronized void resetRegions() {
+        regions.put(Consumer.STEERING, new RegionOfInterest(height / 2, height, 0, Math.min(frameWidth, width)));
+        regions.put(Consumer.SPEED, new RegionOfInterest(0, height, 0, Math.min(frameWidth, width)));
+        regions.put(Consumer.DISPLAY, RegionOfInterest.fullFrame(height, width));
+    }
+
+    public synchronized RegionOfInterest getRegion(Consumer consumer) {
+        return regions.get(consumer);
+    }
+
+    /**
+     * Limits the planes read by a consumer to a region, pixels outside it are left black
+     * @param consumer reader of the planes
+     * @param region rows and columns the consumer reads
+     */
+    public synchronized void setRegion(Consumer consumer, RegionOfInterest region) {
+        if (region.getLastRow() > height || region.getLastCol() > width) {
+            throw new IllegalArgumentException(region + " is outside the " + width + "x" + height + " image");
+        }
+        regions.put(consumer, region);
+    }
+
+    /**
+     * Chooses the morphology applied to the black and white raster after thresholding
+     * @param operation operation to apply, NONE to leave the raster as thresholded
+     * @param size width and height of the square structuring element, must be odd
+     */
+    public void setMorphology(Morphology.Operation operation, int size) {
+        if (size != morphology.getSize()) {
+            morphology = new Morphology(size);
+        }
+        morphologyOperation = operation;
+    }
+
+    public Morphology.Operation getMorphologyOperation() {
+        return morphologyOperation;
+    }
+
+    public int getMorphologySize() {
+        return morphology.getSize();
+    }
+
+    /**
+     * Chooses whether a conversion is split into row bands across the worker threads
+     * @param conversion the conversion to change
+     * @param parallel true to run it in parallel, false to run it on the calling thread
+     */
+    public void setParallel(Conversion conversion, boolean parallel) {
+        EnumSet<Conversion> conversions = EnumSet.copyOf(parallelConversions);
+        if (parallel) {
+            conversions.add(conversion);
+        } else {
+            conversions.remove(conversion);
+        }
+        parallelConversions = conversions;
+    }
+
+    public boolean isParallel(Conversion conversion) {
+        return parallelConversions.contains(conversion);
+    }
+
+    public int getBandHeight() {
+        return bandHeight;
+    }
+
+    public synchronized void setBandHeight(int bandHeight) {
+        rowBands.setBandHeight(bandHeight);
+        this.bandHeight = bandHeight;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Replaces the worker threads used by parallel conversions,
+     * conversions already running finish on the pool they started on
+     * @param parallelism number of worker threads
+     */
+    public synchronized void setParallelism(int parallelism) {
+        rowBands = new RowBandExecutor(parallelism, bandHeight);
+        this.parallelism = parallelism;
+    }
+
+    private void convert(Conversion conversion, int firstRow, int lastRow, RowBandExecutor.RowTask task) {
+        long start = System.nanoTime();
+        if (parallelConversions.contains(conversion)) {
+            rowBands.run(firstRow, lastRow, task);
+        } else {
+            task.run(firstRow, lastRow);
+        }
+        LatencyMonitor.getInstance().recordSince(conversion.name(), start);
     }
 
     /**
@@ -69,7 +228,8 @@ public class ImageManagementModule implements Module {
      */
     public byte[] getMonochromeRaster(byte[] pixels) {
     	byte[] mono = new byte[width * height];
-        ImageManipulator.convertToMonochromeRaster(pixels, mono, height, width, tile);
+        convert(Conversion.MONOCHROME, 0, height,
+                (first, last) -> ImageManipulator.convertToMonochromeRaster(pixels, mono, width, first, last));
         return mono;
 
     }
@@ -82,7 +242,7 @@ public class ImageManagementModule implements Module {
      */
     public byte[] getMonochrome2Raster(byte[] pixels) {
     	byte[] mono = new byte[width * height];
-        ImageManipulator.convertToMonochrome2Raster(pixels, mono, height, width, tile);
+        ImageManipulator.convertToMonochrome2Raster(pixels, mono, bayerPlan);
         return mono;
     }
 
@@ -98,15 +258,227 @@ public class ImageManagementModule implements Module {
         if(blackWhiteRasterVersion == 2) {
             //ImageManipulator.convertToBlackWhite2Raster(pixels, output, height, width, tile);
         }
+        else if(blackWhiteRasterVersion == 3) {
+            convertToAdaptiveBlackWhite(pixels, output, null);
+        }
         else {
-            ImageManipulator.convertToBlackWhiteRaster(pixels, output, height, width, frameWidth, tile);
+            ImageManipulator.convertToBlackWhiteRaster(pixels, output, bayerPlan, getRegion(Consumer.STEERING));
         }
-        if(removeNoise) {
-            output = ImageManipulator.removeNoise(output, height, width);
+        return applyMorphology(output);
+    }
+
+    /**
+     * Fills a black and white mask of given image
+     * Packed 64 pixels to a long, a set pixel is white
+     * Thresholds and applies morphology the same way as getBlackWhiteRaster, for the same blackWhiteRasterVersion
+     *
+     * @param pixels 1D byte array for an image
+     * @param mask cleared output, the same size as the image
+     * @return the black and white mask
+     */
+    public BitMask getBlackWhiteMask(byte[] pixels, BitMask mask) {
+        RegionOfInterest steering = getRegion(Consumer.STEERING);
+        BayerPlan plan = bayerPlan;
+        int version = blackWhiteRasterVersion;
+        if (version == 3) {
+            convertToAdaptiveBlackWhite(pixels, null, mask);
+        } else if (version != 2) {
+            convert(Conversion.DECODE, steering.getFirstRow(), steering.getLastRow(), (first, last) ->
+                    ImageManipulator.convertToBlackWhiteMask(pixels, mask, plan, steering.clipRows(first, last)));
         }
-        if(dilate) {
-            output = ImageManipulator.dilate(output, height, width);
+        applyMorphology(mask, steering);
+        return mask;
+    }
+
+    /**
+     * Applies the morphology of the black and white raster to a mask, working through maskScratch
+     */
+    private synchronized void applyMorphology(BitMask mask, RegionOfInterest region) {
+        if (maskScratch == null || maskScratch.getWidth() != mask.getWidth()
+                || maskScratch.getHeight() != mask.getHeight()) {
+            maskScratch = new BitMask(mask.getWidth(), mask.getHeight());
         }
+        //a square of size k is k / 2 repeated 3x3 squares
+        int repeats = morphology.getSize() / 2;
+        switch (morphologyOperation) {
+            case ERODE:
+                morphMask(mask, repeats, true, region);
+                break;
+            case DILATE:
+                morphMask(mask, repeats, false, region);
+                break;
+            case OPEN:
+                morphMask(mask, repeats, true, region);
+                morphMask(mask, repeats, false, region);
+                break;
+            case CLOSE:
+                morphMask(mask, repeats, false, region);
+                morphMask(mask, repeats, true, region);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Erodes or dilates a mask in place, alternating between it and maskScratch
+     */
+    private void morphMask(BitMask mask, int repeats, boolean erode, RegionOfInterest region) {
+        BitMask source = mask;
+        BitMask target = maskScratch;
+        for (int i = 0; i < repeats; i++) {
+            if (erode) {
+                source.erode(target, region);
+            } else {
+                source.dilate(target, region);
+            }
+            BitMask result = target;
+            target = source;
+            source = result;
+        }
+        if (source != mask) {
+            mask.copyFrom(source);
+        }
+    }
+
+    /**
+     * Decodes every requested plane of the given image in a single pass over the bayer data
+     * Planes are selected by or-ing together the PLANE_ constants
+     *
+     * The planes are taken from the frame pool and belong to frameNumber,
+     * they must not be used after releaseFrame(frameNumber)
+     *
+     * @param pixels 1D byte array for an image
+     * @param planes the planes to produce
+     * @param frameNumber frame the planes belong to
+     * @return the decoded frame, unrequested planes are null
+     */
+    public FrameContext decodeFrame(byte[] pixels, int planes, long frameNumber) {
+        return decodeFrame(new FrameContext(frameNumber, System.nanoTime(), pixels), planes);
+    }
+
+    /**
+     * Decodes every requested plane of a frame in a single pass over its bayer data
+     * Planes are selected by or-ing together the PLANE_ constants
+     * The black and white raster and mask are thresholded together, so they always agree
+     *
+     * The planes are taken from the frame pool and belong to the frame's number,
+     * they must not be used after releaseFrame() is called with it
+     *
+     * @param frame frame holding the bayer8 image
+     * @param planes the planes to produce
+     * @return the frame with its decoded planes, unrequested planes are null
+     */
+    public FrameContext decodeFrame(FrameContext frame, int planes) {
+        byte[] pixels = frame.getBayer();
+        long frameNumber = frame.getFrameNumber();
+        int size = width * height;
+        int[] bw = (planes & PLANE_BLACK_WHITE) != 0
+                ? framePool.acquireInts(FramePool.Plane.BLACK_WHITE, frameNumber, size) : null;
+        byte[] simple = (planes & PLANE_SIMPLE_COLOR) != 0
+                ? framePool.acquireBytes(FramePool.Plane.SIMPLE_COLOR, frameNumber, size) : null;
+        byte[] mono = (planes & PLANE_MONOCHROME) != 0
+                ? framePool.acquireBytes(FramePool.Plane.MONOCHROME, frameNumber, size) : null;
+        int[] rgb = (planes & PLANE_RGB) != 0
+                ? framePool.acquireInts(FramePool.Plane.RGB, frameNumber, size) : null;
+        BitMask mask = (planes & PLANE_BLACK_WHITE_MASK) != 0
+                ? framePool.acquireMask(FramePool.Plane.BLACK_WHITE_MASK, frameNumber, width, height) : null;
+
+        //version 1 thresholds in the fused pass, version 3 needs the whole window around each pixel first
+        int version = blackWhiteRasterVersion;
+        int[] bwOut = version == 1 ? bw : null;
+        BitMask maskOut = version == 1 ? mask : null;
+        BayerPlan plan = bayerPlan;
+        RegionOfInterest steering = getRegion(Consumer.STEERING);
+        RegionOfInterest speed = getRegion(Consumer.SPEED);
+        RegionOfInterest display = getRegion(Consumer.DISPLAY);
+        convert(Conversion.DECODE, 0, height, (first, last) -> ImageManipulator.convertToFusedRasters(pixels,
+                bwOut, maskOut, steering, simple, speed, simpleColorTable, mono, rgb, display, plan, first, last));
+        if (version == 3 && (bw != null || mask != null)) {
+            convertToAdaptiveBlackWhite(pixels, bw, mask);
+        }
+        if (bw != null) {
+            bw = applyMorphology(bw);
+        }
+        if (mask != null) {
+            applyMorphology(mask, steering);
+        }
+        return frame.withPlanes(bw, simple, mono, rgb).withBlackWhiteMask(mask);
+    }
+
+    /**
+     * Thresholds the steering region against the window around each pixel into a raster, a mask or both
+     */
+    private void convertToAdaptiveBlackWhite(byte[] pixels, int[] output, BitMask mask) {
+        if (pixels == null) {
+            return;
+        }
+        RegionOfInterest steering = getRegion(Consumer.STEERING);
+        int window = adaptiveWindow;
+        synchronized (integralImage) {
+            integralImage.compute(pixels, bayerPlan, steering);
+            convert(Conversion.DECODE, steering.getFirstRow(), steering.getLastRow(), (first, last) ->
+                    ImageManipulator.convertToAdaptiveBlackWhiteRaster(integralImage, output, mask, width,
+                            steering.clipRows(first, last), window));
+        }
+    }
+
+    public int getBlackWhiteRasterVersion() {
+        return blackWhiteRasterVersion;
+    }
+
+    /**
+     * Chooses how the black and white raster is thresholded
+     * @param version 1 compares each pixel to the average of its row,
+     *                3 compares each pixel to the average of the adaptiveWindow square around it
+     */
+    public void setBlackWhiteRasterVersion(int version) {
+        blackWhiteRasterVersion = version;
+    }
+
+    public int getAdaptiveWindow() {
+        return adaptiveWindow;
+    }
+
+    /**
+     * @param adaptiveWindow width and height of the window averaged by version 3 of the black and white raster
+     */
+    public void setAdaptiveWindow(int adaptiveWindow) {
+        this.adaptiveWindow = adaptiveWindow;
+    }
+
+    public ColorThresholds getColorThresholds() {
+        return simpleColorTable.getThresholds();
+    }
+
+    /**
+     * Changes the thresholds of the simple color raster. The lookup table is rebuilt in the background
+     * and frames keep using the old thresholds until it is done.
+     * @param thresholds new simple color thresholds
+     * @return completes once frames are classified with the new thresholds
+     */
+    public Future<?> setColorThresholds(ColorThresholds thresholds) {
+        return simpleColorTable.rebuildAsync(thresholds);
+    }
+
+    public SimpleColorTable getSimpleColorTable() {
+        return simpleColorTable;
+    }
+
+    /**
+     * Returns the planes decoded for a frame to the frame pool
+     * @param frameNumber frame whose planes are no longer used
+     */
+    public void releaseFrame(long frameNumber) {
+        framePool.release(frameNumber);
+    }
+
+    public FramePool getFramePool() {
+        return framePool;
+    }
+
+    private int[] applyMorphology(int[] output) {
+        morphology.apply(morphologyOperation, output, height, width, getRegion(Consumer.STEERING));
         return output;
     }
 
@@ -133,7 +505,11 @@ public class ImageManagementModule implements Module {
      */
     public byte[] getSimpleColorRaster(byte[] pixels) {
     	byte[] simple = new byte[width * height];
-        ImageManipulator.convertToSimpleColorRaster(pixels, simple, height, width, frameWidth, tile);
+        BayerPlan plan = bayerPlan;
+        RegionOfInterest speed = getRegion(Consumer.SPEED);
+        convert(Conversion.SIMPLE_COLOR, speed.getFirstRow(), speed.getLastRow(), (first, last) ->
+                ImageManipulator.convertToSimpleColorRaster(pixels, simple, plan, speed.clipRows(first, last),
+                        simpleColorTable));
         return simple;
 
 
@@ -149,7 +525,10 @@ public class ImageManagementModule implements Module {
      */
     public int[] getRGBRaster(byte[] pixels) {
     	int[] rgb = new int[width*height];
-        ImageManipulator.convertToRGBRaster(pixels, rgb, height, width, tile);
+        BayerPlan plan = bayerPlan;
+        RegionOfInterest display = getRegion(Consumer.DISPLAY);
+        convert(Conversion.RGB, display.getFirstRow(), display.getLastRow(), (first, last) ->
+                ImageManipulator.convertToRGBRaster(pixels, rgb, plan, display.clipRows(first, last)));
         return rgb;
 
     }
@@ -217,9 +596,10 @@ public class ImageManagementModule implements Module {
     	byte[] mono = new byte[width * height];
     	int[] rgb = new int[width * height];
     	int[] output = new int[width * height];
-    	ImageManipulator.convertToMonochrome2Raster(pixels, mono, height, width, tile);
+    	ImageManipulator.convertToMonochrome2Raster(pixels, mono, bayerPlan);
     	ImageManipulator.convertMonotoRGB(mono, rgb, mono.length);
-    	ImageManipulator.convertToRobertsCrossRaster(rgb, output, height, width);
+    	convert(Conversion.ROBERTS_CROSS, 0, height,
+                (first, last) -> ImageManipulator.convertToRobertsCrossRaster(rgb, output, height, width, first, last));
     	return output;
     }
 
@@ -237,7 +617,7 @@ public class ImageManagementModule implements Module {
         int[] output = getBlackWhiteRaster(pixels);
 
         int[] rgb = new int[width*height];
-        ImageManipulator.findRoad(output, rgb, height, width);
+        ImageManipulator.findRoad(output, rgb, height, width, ImageManipulator.ROAD_REGION);
         return rgb;
     }
 
@@ -255,22 +635,33 @@ public class ImageManagementModule implements Module {
 
     @Override
     public void update(CarControl control) {
+        long frameNumber = ++updateFrame;
+        int planes = PLANE_BLACK_WHITE | PLANE_SIMPLE_COLOR;
+        if (viewType == 1) {
+            planes |= PLANE_RGB;
+        } else if (viewType == 2) {
+            planes |= PLANE_MONOCHROME;
+        }
+        FrameContext frame = decodeFrame(control.getRecentCameraImage(), planes, frameNumber);
         imagePixels = null;
         switch (viewType) {
             case 1:
-                imagePixels = getRGBRaster(control.getRecentCameraImage());
+                imagePixels = frame.getRGB();
                 break;
             case 2:
-                imagePixels = getMonoRGBRaster(control.getRecentCameraImage());
+                imagePixels = framePool.acquireInts(FramePool.Plane.RGB, frameNumber, width * height);
+                ImageManipulator.convertMonotoRGB(frame.getMonochrome(), imagePixels, imagePixels.length);
                 break;
             case 3:
-                imagePixels = getSimpleRGBRaster(control.getRecentCameraImage());
+                imagePixels = framePool.acquireInts(FramePool.Plane.RGB, frameNumber, width * height);
+                ImageManipulator.convertSimpleToRGB(frame.getSimpleColor(), imagePixels, imagePixels.length);
                 break;
             case 4:
-                imagePixels = getBlackWhiteRaster(control.getRecentCameraImage());
+                imagePixels = frame.getBlackWhite();
                 break;
             case 5:
-                imagePixels = getRoad(control.getRecentCameraImage());
+                imagePixels = framePool.acquireInts(FramePool.Plane.RGB, frameNumber, width * height);
+                ImageManipulator.findRoad(frame.getBlackWhite(), imagePixels, height, width, ImageManipulator.ROAD_REGION);
                 break;
             case 6:
             	imagePixels = getRobertsCross(control.getRecentCameraImage());
@@ -280,18 +671,10 @@ public class ImageManagementModule implements Module {
         }
 
         control.setRenderedImage(imagePixels);
-        if(viewType != 4) {
-        	control.setRGBImage(getBlackWhiteRaster(control.getRecentCameraImage()));
-        }
-        else {
-        	control.setRGBImage(imagePixels);
-        }
-        if(viewType != 3) {
-            control.setProcessedImage(getSimpleColorRaster(control.getRecentCameraImage()));
-        }
-        else {
-        	//control.setProcessedImage(imagePixels);
-        }
+        control.setRGBImage(frame.getBlackWhite());
+        control.setProcessedImage(frame.getSimpleColor());
+        //the previous frame's planes have now been replaced everywhere they were published
+        framePool.release(frameNumber - 1);
     }
 
     @Override
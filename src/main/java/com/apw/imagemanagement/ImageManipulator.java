@@ -18,6 +18,15 @@ public class ImageManipulator {
 
 	private static double luminanceMultiplier = 1;
 
+	//rows and columns the lane finding rasters were written for before regions could be passed in
+	private static final RegionOfInterest LANE_REGION = new RegionOfInterest(240, 456, 0, 640);
+
+	//rows and columns the road overlay was drawn in before regions could be passed in
+	static final RegionOfInterest ROAD_REGION = new RegionOfInterest(240, 456, 0, 639);
+
+	//luminance of the row being thresholded, one per thread so row bands can decode at once without allocating
+	private static final ThreadLocal<int[]> luminanceRow = ThreadLocal.withInitial(() -> new int[0]);
+
 	/** Converts a bayer8 image to a monochrome image, uses the green value of the bayer8
 	 *
 	 * @param bayer bayer8 image
@@ -27,8 +36,19 @@ public class ImageManipulator {
 	 * @param tile tiling pattern of the bayer8 image
 	 */
 	public static void convertToMonochromeRaster(byte[] bayer, byte[] mono, int nrows, int ncols, byte tile) {
+		convertToMonochromeRaster(bayer, mono, ncols, 0, nrows);
+	}
 
-		for (int r = 0; r < nrows; r++) {
+	/** Converts rows [firstRow, lastRow) of a bayer8 image to a monochrome image, uses only the top right pixel of each tile
+	 *
+	 * @param bayer bayer8 image
+	 * @param mono	monochrome output
+	 * @param ncols number of columns of pixels in the image
+	 * @param firstRow first row to convert
+	 * @param lastRow row after the last row to convert
+	 */
+	public static void convertToMonochromeRaster(byte[] bayer, byte[] mono, int ncols, int firstRow, int lastRow) {
+		for (int r = firstRow; r < lastRow; r++) {
 			for (int c = 0; c < ncols; c++) {
 				mono[r * ncols + c] = (byte) ((((int) bayer[(r * ncols * 2 + c) * 2 + 1]) & 0xFF));            //Use only top right
 			}
@@ -36,13 +56,26 @@ public class ImageManipulator {
 	}
 
 	public static void convertToMonochrome2Raster(byte[] bayer, byte[] mono, int nrows, int ncols, byte tile) {
+		convertToMonochrome2Raster(bayer, mono, new BayerPlan(tile, ncols, nrows));
+	}
+
+	/** Converts a bayer8 image to a monochrome image, averages the rgb values of each pixel
+	 *
+	 * @param bayer bayer8 image
+	 * @param mono	monochrome output
+	 * @param plan channel offsets of the bayer8 image
+	 */
+	public static void convertToMonochrome2Raster(byte[] bayer, byte[] mono, BayerPlan plan) {
+		int nrows = plan.getNrows(), ncols = plan.getNcols(), colStride = plan.getColStride();
+		int redOffset = plan.getRedOffset(), greenOffset = plan.getGreenOffset(), blueOffset = plan.getBlueOffset();
 
 		for (int r = 0; r < nrows; r++) {
-			for (int c = 0; c < ncols; c++) {
+			int pos = plan.pixelIndex(r, 0);
+			for (int c = 0; c < ncols; c++, pos += colStride) {
 
-				int R = (bayer[getPos(c,r,combineTile((byte)0,tile),ncols,nrows)]&0xFF);
-				int G = (bayer[getPos(c,r,combineTile((byte)1,tile),ncols,nrows)]&0xFF);
-				int B = (bayer[getPos(c,r,combineTile((byte)3,tile),ncols,nrows)]&0xFF);
+				int R = (bayer[pos + redOffset]&0xFF);
+				int G = (bayer[pos + greenOffset]&0xFF);
+				int B = (bayer[pos + blueOffset]&0xFF);
 				//double Y = R *  .299000 + G *  .587000 + B *  .114000;
 
 				double Y = (R+G+B)/3;
@@ -99,29 +132,56 @@ public class ImageManipulator {
 
 
 	public static void convertToBlackWhiteRaster(byte[] bayer, int[] mono, int nrows, int ncols, int frameWidth, byte tile) {
+		convertToBlackWhiteRaster(bayer, mono, frameWidth, new BayerPlan(tile, ncols, nrows));
+	}
+
+	/** Converts a bayer8 image to a black and white image based on average luminance of each row
+	 *
+	 * @param bayer bayer8 image
+	 * @param mono	black and white output
+	 * @param frameWidth number of columns of pixels to convert
+	 * @param plan channel offsets of the bayer8 image
+	 */
+	public static void convertToBlackWhiteRaster(byte[] bayer, int[] mono, int frameWidth, BayerPlan plan) {
+		convertToBlackWhiteRaster(bayer, mono, plan, new RegionOfInterest(240, plan.getNrows(), 0, frameWidth));
+	}
+
+	/** Converts the region of a bayer8 image to a black and white image based on average luminance of each row
+	 *
+	 * @param bayer bayer8 image
+	 * @param mono	black and white output
+	 * @param plan channel offsets of the bayer8 image
+	 * @param region rows and columns to convert, luminance is averaged over the columns of the region
+	 */
+	public static void convertToBlackWhiteRaster(byte[] bayer, int[] mono, BayerPlan plan, RegionOfInterest region) {
 		if (bayer == null) {
 			return;
 		}
+		int ncols = plan.getNcols(), colStride = plan.getColStride();
+		int redOffset = plan.getRedOffset(), greenOffset = plan.getGreenOffset(), blueOffset = plan.getBlueOffset();
+		int firstCol = region.getFirstCol(), lastCol = region.getLastCol(), regionWidth = region.getWidth();
 		int pixelsAveraged = 3;
-		for (int r = 240; r < nrows; r++) {
+		for (int r = region.getFirstRow(); r < region.getLastRow(); r++) {
+			int rowStart = plan.pixelIndex(r, 0);
 			int averageLuminance = 0;
-			for(int c = 0; c < frameWidth; c++) {
-				int R = (bayer[getPos(c,r,combineTile((byte)0,tile),ncols,nrows)]&0xFF);
-				int G = (bayer[getPos(c,r,combineTile((byte)1,tile),ncols,nrows)]&0xFF);
-				int B = (bayer[getPos(c,r,combineTile((byte)3,tile),ncols,nrows)]&0xFF);
+			for(int c = firstCol, pos = rowStart + firstCol * colStride; c < lastCol; c++, pos += colStride) {
+				int R = (bayer[pos + redOffset]&0xFF);
+				int G = (bayer[pos + greenOffset]&0xFF);
+				int B = (bayer[pos + blueOffset]&0xFF);
 				averageLuminance += (R + G + B);
 			}
 
 
 			int borderWidth = pixelsAveraged >> 1; //int division
-			for (int c = borderWidth; c < frameWidth-borderWidth; c++) {
+			for (int c = firstCol + borderWidth; c < lastCol-borderWidth; c++) {
 				int pix = 0;
-				for(int i = 0; i < pixelsAveraged; i++) {
-					pix += (bayer[getPos(c-borderWidth + i,r,combineTile((byte)0,tile),ncols,nrows)]&0xFF);
-					pix += (bayer[getPos(c-borderWidth + i,r,combineTile((byte)1,tile),ncols,nrows)]&0xFF);
-					pix += (bayer[getPos(c-borderWidth + i,r,combineTile((byte)3,tile),ncols,nrows)]&0xFF);
+				int pos = rowStart + (c - borderWidth) * colStride;
+				for(int i = 0; i < pixelsAveraged; i++, pos += colStride) {
+					pix += (bayer[pos + redOffset]&0xFF);
+					pix += (bayer[pos + greenOffset]&0xFF);
+					pix += (bayer[pos + blueOffset]&0xFF);
 				}
-				if (pix * frameWidth > luminanceMultiplier * averageLuminance * pixelsAveraged) {
+				if (pix * regionWidth > luminanceMultiplier * averageLuminance * pixelsAveraged) {
 					mono[r * ncols + c] = 0xFFFFFF;
 				} else {
 					mono[r * ncols + c] = 0;
@@ -130,24 +190,132 @@ public class ImageManipulator {
 		}
 	}
 
+	/** Converts the region of a bayer8 image to a black and white image by comparing each pixel
+	 * to the average luminance of the square window around it instead of its whole row
+	 *
+	 * @param bayer bayer8 image
+	 * @param bw black and white output
+	 * @param plan channel offsets of the bayer8 image
+	 * @param region rows and columns to convert, windows are clipped to it
+	 * @param windowSize width and height of the window averaged around each pixel
+	 */
+	public static void convertToAdaptiveBlackWhiteRaster(byte[] bayer, int[] bw, BayerPlan plan, RegionOfInterest region,
+														 int windowSize) {
+		if (bayer == null) {
+			return;
+		}
+		IntegralImage integral = new IntegralImage();
+		integral.compute(bayer, plan, region);
+		convertToAdaptiveBlackWhiteRaster(integral, bw, plan.getNcols(), region, windowSize);
+	}
+
+	/** Thresholds rows of an image whose luminance is already summed, a pixel is white when
+	 * the 3 pixels around it are brighter than the average of the square window around it
+	 *
+	 * @param integral luminance of the image, computed for a region containing rows
+	 * @param bw black and white output
+	 * @param ncols number of columns of pixels in the image
+	 * @param rows rows and columns to convert
+	 * @param windowSize width and height of the window averaged around each pixel
+	 */
+	public static void convertToAdaptiveBlackWhiteRaster(IntegralImage integral, int[] bw, int ncols,
+														 RegionOfInterest rows, int windowSize) {
+		convertToAdaptiveBlackWhiteRaster(integral, bw, null, ncols, rows, windowSize);
+	}
+
+	/** Thresholds rows of an image whose luminance is already summed into a raster, a packed mask or both,
+	 * from the same decision for each pixel
+	 *
+	 * @param integral luminance of the image, computed for a region containing rows
+	 * @param bw black and white output, or null
+	 * @param mask cleared black and white mask output, or null
+	 * @param ncols number of columns of pixels in the image
+	 * @param rows rows and columns to convert
+	 * @param windowSize width and height of the window averaged around each pixel
+	 */
+	public static void convertToAdaptiveBlackWhiteRaster(IntegralImage integral, int[] bw, BitMask mask, int ncols,
+														 RegionOfInterest rows, int windowSize) {
+		int pixelsAveraged = 3;
+		int borderWidth = pixelsAveraged >> 1; //int division
+		int half = windowSize >> 1;
+		for (int r = rows.getFirstRow(); r < rows.getLastRow(); r++) {
+			for (int c = rows.getFirstCol() + borderWidth; c < rows.getLastCol() - borderWidth; c++) {
+				int pix = integral.sum(r, c - borderWidth, r + 1, c + borderWidth + 1);
+				int box = integral.sum(r - half, c - half, r + half + 1, c + half + 1);
+				int area = integral.area(r - half, c - half, r + half + 1, c + half + 1);
+				boolean white = (double) pix * area > luminanceMultiplier * box * pixelsAveraged;
+				if (bw != null) {
+					bw[r * ncols + c] = white ? 0xFFFFFF : 0;
+				}
+				if (white && mask != null) {
+					mask.set(c, r);
+				}
+			}
+		}
+	}
+
+	/** Converts the region of a bayer8 image to a packed black and white mask,
+	 * setting the same pixels convertToBlackWhiteRaster makes white
+	 *
+	 * @param bayer bayer8 image
+	 * @param mask cleared black and white output, the same size as the image
+	 * @param plan channel offsets of the bayer8 image
+	 * @param region rows and columns to convert, luminance is averaged over the columns of the region
+	 */
+	public static void convertToBlackWhiteMask(byte[] bayer, BitMask mask, BayerPlan plan, RegionOfInterest region) {
+		if (bayer == null) {
+			return;
+		}
+		int colStride = plan.getColStride();
+		int redOffset = plan.getRedOffset(), greenOffset = plan.getGreenOffset(), blueOffset = plan.getBlueOffset();
+		int firstCol = region.getFirstCol(), lastCol = region.getLastCol(), regionWidth = region.getWidth();
+		int[] luminance = getLuminanceRow(regionWidth);
+		int pixelsAveraged = 3;
+		int borderWidth = pixelsAveraged >> 1; //int division
+		for (int r = region.getFirstRow(); r < region.getLastRow(); r++) {
+			int averageLuminance = 0;
+			int pos = plan.pixelIndex(r, firstCol);
+			for (int c = 0; c < regionWidth; c++, pos += colStride) {
+				luminance[c] = (bayer[pos + redOffset]&0xFF) + (bayer[pos + greenOffset]&0xFF) + (bayer[pos + blueOffset]&0xFF);
+				averageLuminance += luminance[c];
+			}
+			for (int c = borderWidth; c < regionWidth-borderWidth; c++) {
+				int pix = luminance[c-1] + luminance[c] + luminance[c+1];
+				if (pix * regionWidth > luminanceMultiplier * averageLuminance * pixelsAveraged) {
+					mask.set(firstCol + c, r);
+				}
+			}
+		}
+	}
+
 	public static void convertToBlackWhite2Raster(byte[] bayer, byte[] mono, int nrows, int ncols, byte tile) {
-		for (int r = nrows/2; r < nrows; r++) {
+		convertToBlackWhite2Raster(bayer, mono, new BayerPlan(tile, ncols, nrows));
+	}
+
+	public static void convertToBlackWhite2Raster(byte[] bayer, byte[] mono, BayerPlan plan) {
+		convertToBlackWhite2Raster(bayer, mono, plan, LANE_REGION);
+	}
+
+	public static void convertToBlackWhite2Raster(byte[] bayer, byte[] mono, BayerPlan plan, RegionOfInterest region) {
+		int ncols = plan.getNcols(), colStride = plan.getColStride();
+		int redOffset = plan.getRedOffset(), greenOffset = plan.getGreenOffset(), blueOffset = plan.getBlueOffset();
+		for (int r = region.getFirstRow(); r < region.getLastRow(); r++) {
 			int averageLuminance = 0;
-			for(int c = 0; c < ncols; c++) {
-				int R = (bayer[getPos(c,r,combineTile((byte)0,tile),ncols,nrows)]&0xFF);
-				int G = (bayer[getPos(c,r,combineTile((byte)1,tile),ncols,nrows)]&0xFF);
-				int B = (bayer[getPos(c,r,combineTile((byte)3,tile),ncols,nrows)]&0xFF);
+			int pos = plan.pixelIndex(r, 0);
+			//the running average starts at the left edge, so columns left of the region are still read
+			for(int c = 0; c < region.getLastCol(); c++, pos += colStride) {
+				int R = (bayer[pos + redOffset]&0xFF);
+				int G = (bayer[pos + greenOffset]&0xFF);
+				int B = (bayer[pos + blueOffset]&0xFF);
 				if(c == 0){
 					averageLuminance = (R+G+B)/3;
 				}
-				if(!(c >= 640 || r < 240 || r > 455)) {
+				if(c >= region.getFirstCol()) {
 					if ((averageLuminance + (R+G+B)/3)/2 > averageLuminance * 1.5) {
 						mono[r * ncols + c] = 1;
 					} else {
 						mono[r * ncols + c] = 0;
 					}
-				} else {
-					mono[r * ncols + c] = 0;
 				}
 				averageLuminance = (averageLuminance + (R+G+B)/3)/2;
 			}
@@ -155,7 +323,20 @@ public class ImageManipulator {
 	}
 
 	public static void convertToRobertsCrossRaster(int[] input, int[] output, int nrows, int ncols) {
-		for (int r = 0; r < nrows - 1; r++) {
+		convertToRobertsCrossRaster(input, output, nrows, ncols, 0, nrows);
+	}
+
+	/** Roberts cross edge detection over rows [firstRow, lastRow) of an image
+	 *
+	 * @param input rgb image
+	 * @param output edge image
+	 * @param nrows number of rows of pixels in the image
+	 * @param ncols number of columns of pixels in the image
+	 * @param firstRow first row to convert
+	 * @param lastRow row after the last row to convert
+	 */
+	public static void convertToRobertsCrossRaster(int[] input, int[] output, int nrows, int ncols, int firstRow, int lastRow) {
+		for (int r = firstRow; r < Math.min(lastRow, nrows - 1); r++) {
 			for(int c = 0; c < ncols - 1; c++) {
 				output[r * ncols + c] = Math.abs(input[r * ncols + c] - input[(r+1) * ncols + (c+1)])
 						+ Math.abs(input[r * ncols + (c+1)] - input[(r+1) * ncols + c]);
@@ -174,8 +355,32 @@ public class ImageManipulator {
 	 */
 	public static int[] removeNoise(int[] pixels, int nrows, int ncols) {
 		int[] output = new int[nrows * ncols];
-		for (int r = nrows/2; r < nrows; r++) {
-			for (int c = 0; c < ncols; c++) {
+		removeNoise(pixels, output, nrows, ncols);
+		return output;
+	}
+
+	/** erosion filter used on pixels in a byte[], writing into a cleared output image
+	 *
+	 * @param pixels image to be eroded
+	 * @param output eroded image, must be cleared and the same size as pixels
+	 * @param nrows	number of rows of pixels in the image
+	 * @param ncols number of columns of pixels in the image
+	 */
+	public static void removeNoise(int[] pixels, int[] output, int nrows, int ncols) {
+		removeNoise(pixels, output, nrows, ncols, new RegionOfInterest(nrows/2, nrows, 0, ncols));
+	}
+
+	/** erosion filter used on the region of pixels in a byte[], writing into a cleared output image
+	 *
+	 * @param pixels image to be eroded
+	 * @param output eroded image, must be cleared and the same size as pixels
+	 * @param nrows	number of rows of pixels in the image
+	 * @param ncols number of columns of pixels in the image
+	 * @param region rows and columns to erode
+	 */
+	public static void removeNoise(int[] pixels, int[] output, int nrows, int ncols, RegionOfInterest region) {
+		for (int r = region.getFirstRow(); r < region.getLastRow(); r++) {
+			for (int c = region.getFirstCol(); c < region.getLastCol(); c++) {
 				if(pixels[r * ncols + c] == 0xFFFFFF) {
 					int whiteNeighbors = 0;
 					//top left
@@ -219,7 +424,6 @@ public class ImageManipulator {
 				}
 			}
 		}
-		return output;
 	}
 
 	/** dilation filter used on pixels in a byte[]
@@ -231,8 +435,32 @@ public class ImageManipulator {
 	 */
 	public static int[] dilate(int[] pixels, int nrows, int ncols) {
 		int[] output = new int[nrows * ncols];
-		for (int r = nrows/2; r < nrows; r++) {
-			for (int c = 0; c < ncols; c++) {
+		dilate(pixels, output, nrows, ncols);
+		return output;
+	}
+
+	/** dilation filter used on pixels in a byte[], writing into a cleared output image
+	 *
+	 * @param pixels image to be dilated
+	 * @param output dilated image, must be cleared and the same size as pixels
+	 * @param nrows	number of rows of pixels in the image
+	 * @param ncols number of columns of pixels in the image
+	 */
+	public static void dilate(int[] pixels, int[] output, int nrows, int ncols) {
+		dilate(pixels, output, nrows, ncols, new RegionOfInterest(nrows/2, nrows, 0, ncols));
+	}
+
+	/** dilation filter used on the region of pixels in a byte[], writing into a cleared output image
+	 *
+	 * @param pixels image to be dilated
+	 * @param output dilated image, must be cleared and the same size as pixels
+	 * @param nrows	number of rows of pixels in the image
+	 * @param ncols number of columns of pixels in the image
+	 * @param region rows and columns to dilate
+	 */
+	public static void dilate(int[] pixels, int[] output, int nrows, int ncols, RegionOfInterest region) {
+		for (int r = region.getFirstRow(); r < region.getLastRow(); r++) {
+			for (int c = region.getFirstCol(); c < region.getLastCol(); c++) {
 				if(pixels[r * ncols + c] == 0) {
 					//top left
 					if((r - 1) > 0 && (c - 1) > 0 && pixels[(r - 1) * ncols + (c - 1)] == 0xFFFFFF) {
@@ -272,7 +500,6 @@ public class ImageManipulator {
 				}
 			}
 		}
-		return output;
 	}
 
 	/** Converts a bayer8 image to a simple color image, the simple colors are red, green, blue, yellow, white, grey and black
@@ -296,41 +523,361 @@ public class ImageManipulator {
 		 * 6 = YELLOW
 		 */
 
+		convertToSimpleColorRaster(bayer, simple, frameWidth, new BayerPlan(tile, ncols, nrows));
+	}
+
+	/** Converts a bayer8 image to a simple color image, the simple colors are red, green, blue, yellow, white, grey and black
+	 *
+	 * @param bayer bayer8 image
+	 * @param simple simple color output
+	 * @param frameWidth number of columns of pixels to convert
+	 * @param plan channel offsets of the bayer8 image
+	 */
+	public static void convertToSimpleColorRaster(byte[] bayer, byte[] simple, int frameWidth, BayerPlan plan) {
+		convertToSimpleColorRaster(bayer, simple, plan, new RegionOfInterest(0, plan.getNrows(), 0, frameWidth));
+	}
+
+	/** Converts the region of a bayer8 image to a simple color image
+	 *
+	 * @param bayer bayer8 image
+	 * @param simple simple color output
+	 * @param plan channel offsets of the bayer8 image
+	 * @param region rows and columns to convert
+	 */
+	public static void convertToSimpleColorRaster(byte[] bayer, byte[] simple, BayerPlan plan, RegionOfInterest region) {
+		convertToSimpleColorRaster(bayer, simple, plan, region, null);
+	}
+
+	/** Converts the region of a bayer8 image to a simple color image, classifying each pixel with a lookup table
+	 *
+	 * @param bayer bayer8 image
+	 * @param simple simple color output
+	 * @param plan channel offsets of the bayer8 image
+	 * @param region rows and columns to convert
+	 * @param colors lookup table of the simple colors, or null to classify with SimpleThresholds
+	 */
+	public static void convertToSimpleColorRaster(byte[] bayer, byte[] simple, BayerPlan plan, RegionOfInterest region,
+												  SimpleColorTable colors) {
 		if (bayer == null) {
 			return;
 		}
+		int ncols = plan.getNcols(), colStride = plan.getColStride();
+		int redOffset = plan.getRedOffset(), greenOffset = plan.getGreenOffset(), blueOffset = plan.getBlueOffset();
+		//read the table once, a rebuild swaps in a new array rather than changing this one
+		byte[] table = colors != null ? colors.getTable() : null;
+		int shift = colors != null ? colors.getShift() : 0, bits = 8 - shift;
 
-		for(int r = 0; r < nrows; r++){
-			for(int c = 0; c < frameWidth; c++){
-				int R = (bayer[getPos(c,r,combineTile((byte)0,tile),ncols,nrows)]&0xFF);
-				int G = (bayer[getPos(c,r,combineTile((byte)1,tile),ncols,nrows)]&0xFF);
-				int B = (bayer[getPos(c,r,combineTile((byte)3,tile),ncols,nrows)]&0xFF);
-				//int B = (((int)bayer[(r*ncols*2 + c)*2 + 1+2*ncols-ncols*2*getBit(tile,1)-getBit(tile,0)])&0xFF);			//Bottom right (blue)
-				double Y = R *  .299000 + G *  .587000 + B *  .114000;
-				double U  = R * -.168736 + G * -.331264 + B *  .500000 + 128;
-				double V = R *  .500000 + G * -.418688 + B * -.081312 + 128;
-				R =(int)(  1.4075 * (V - 128));
-				G = (int)(0- 0.3455 * (U - 128) - (0.7169 * (V - 128)));
-				B = (int)(1.7790 * (U - 128));
-				//If one of the colors has a value 50 greater than both other colors
-				//it assigns that pixel to that color
-				if(R > G+SimpleThresholds.redGreen && R > B+SimpleThresholds.redBlue){
-					simple[r*ncols+c] = 0;
-				} else if(G > R+SimpleThresholds.greenRed && G > B+SimpleThresholds.greenBlue){
-					simple[r*ncols+c] = 1;
-				} else if(B > R+SimpleThresholds.blueRed && B > G+SimpleThresholds.blueGreen){
-					simple[r*ncols+c] = 2;
-				}else if(R<G+SimpleThresholds.yellowDiff&&G<R+SimpleThresholds.yellowDiff&&(R>B+SimpleThresholds.yellowBlue)){
-					simple[r*ncols+c] = 6;
-				}
-				//Otherwise it sees if one of the colors has a value above 170 for white
-				// if not, 85 for grey and below 85 for black
-				else if(Y>SimpleThresholds.whitePoint){
-					simple[r*ncols+c] = 3;
-				} else if(Y>SimpleThresholds.greyPoint){
-					simple[r*ncols+c] = 4; //0x808080
+		for(int r = region.getFirstRow(); r < region.getLastRow(); r++){
+			int pos = plan.pixelIndex(r, region.getFirstCol());
+			for(int c = region.getFirstCol(); c < region.getLastCol(); c++, pos += colStride){
+				int R = (bayer[pos + redOffset]&0xFF);
+				int G = (bayer[pos + greenOffset]&0xFF);
+				int B = (bayer[pos + blueOffset]&0xFF);
+				if (table != null) {
+					simple[r*ncols+c] = table[(((R >> shift) << bits | (G >> shift)) << bits) | (B >> shift)];
 				} else {
-					simple[r * ncols + c] = 5;
+					simple[r*ncols+c] = classifySimpleColor(R, G, B);
+				}
+			}
+		}
+	}
+
+	/** Classifies a single rgb pixel into one of the simple colors used by convertToSimpleColorRaster
+	 *
+	 * @param R red value of the pixel, 0-255
+	 * @param G green value of the pixel, 0-255
+	 * @param B blue value of the pixel, 0-255
+	 * @return simple color code, 0-6
+	 */
+	public static byte classifySimpleColor(int R, int G, int B) {
+		return classifySimpleColor(R, G, B, ColorThresholds.DEFAULT);
+	}
+
+	/** Classifies a single rgb pixel into one of the simple colors using the given thresholds
+	 *
+	 * @param R red value of the pixel, 0-255
+	 * @param G green value of the pixel, 0-255
+	 * @param B blue value of the pixel, 0-255
+	 * @param thresholds thresholds to classify with
+	 * @return simple color code, 0-6
+	 */
+	public static byte classifySimpleColor(int R, int G, int B, ColorThresholds thresholds) {
+		double Y = R *  .299000 + G *  .587000 + B *  .114000;
+		double U  = R * -.168736 + G * -.331264 + B *  .500000 + 128;
+		double V = R *  .500000 + G * -.418688 + B * -.081312 + 128;
+		R =(int)(  1.4075 * (V - 128));
+		G = (int)(0- 0.3455 * (U - 128) - (0.7169 * (V - 128)));
+		B = (int)(1.7790 * (U - 128));
+		//If one of the colors has a value 50 greater than both other colors
+		//it assigns that pixel to that color
+		if(R > G+thresholds.getRedGreen() && R > B+thresholds.getRedBlue()){
+			return 0;
+		} else if(G > R+thresholds.getGreenRed() && G > B+thresholds.getGreenBlue()){
+			return 1;
+		} else if(B > R+thresholds.getBlueRed() && B > G+thresholds.getBlueGreen()){
+			return 2;
+		}else if(R<G+thresholds.getYellowDiff()&&G<R+thresholds.getYellowDiff()&&(R>B+thresholds.getYellowBlue())){
+			return 6;
+		}
+		//Otherwise it sees if one of the colors has a value above 170 for white
+		// if not, 85 for grey and below 85 for black
+		else if(Y>thresholds.getWhitePoint()){
+			return 3;
+		} else if(Y>thresholds.getGreyPoint()){
+			return 4; //0x808080
+		} else {
+			return 5;
+		}
+	}
+
+	/** Decodes a bayer8 image into several rasters at once, reading each bayer tile only once.
+	 * Any output that is null is skipped. The outputs match convertToBlackWhiteRaster,
+	 * convertToSimpleColorRaster, convertToMonochromeRaster and convertToRGBRaster.
+	 *
+	 * @param bayer bayer8 image
+	 * @param bw black and white output, or null
+	 * @param simple simple color output, or null
+	 * @param mono monochrome output, or null
+	 * @param rgb rgb output, or null
+	 * @param nrows	number of rows of pixels in the image
+	 * @param ncols number of columns of pixels in the image
+	 * @param frameWidth number of columns used by the black and white and simple color outputs
+	 * @param tile tiling pattern of the bayer8 image
+	 */
+	public static void convertToFusedRasters(byte[] bayer, int[] bw, byte[] simple, byte[] mono, int[] rgb,
+											 int nrows, int ncols, int frameWidth, byte tile) {
+		convertToFusedRasters(bayer, bw, simple, mono, rgb, frameWidth, new BayerPlan(tile, ncols, nrows));
+	}
+
+	/** Decodes a bayer8 image into several rasters at once, reading each bayer tile only once.
+	 *
+	 * @param bayer bayer8 image
+	 * @param bw black and white output, or null
+	 * @param simple simple color output, or null
+	 * @param mono monochrome output, or null
+	 * @param rgb rgb output, or null
+	 * @param frameWidth number of columns used by the black and white and simple color outputs
+	 * @param plan channel offsets of the bayer8 image
+	 */
+	public static void convertToFusedRasters(byte[] bayer, int[] bw, byte[] simple, byte[] mono, int[] rgb,
+											 int frameWidth, BayerPlan plan) {
+		convertToFusedRasters(bayer, bw, simple, mono, rgb, frameWidth, plan, 0, plan.getNrows());
+	}
+
+	/** Decodes rows [firstRow, lastRow) of a bayer8 image into several rasters at once
+	 *
+	 * @param bayer bayer8 image
+	 * @param bw black and white output, or null
+	 * @param simple simple color output, or null
+	 * @param mono monochrome output, or null
+	 * @param rgb rgb output, or null
+	 * @param frameWidth number of columns used by the black and white and simple color outputs
+	 * @param plan channel offsets of the bayer8 image
+	 * @param firstRow first row to decode
+	 * @param lastRow row after the last row to decode
+	 */
+	public static void convertToFusedRasters(byte[] bayer, int[] bw, byte[] simple, byte[] mono, int[] rgb,
+											 int frameWidth, BayerPlan plan, int firstRow, int lastRow) {
+		int nrows = plan.getNrows();
+		convertToFusedRasters(bayer, bw, new RegionOfInterest(240, nrows, 0, frameWidth),
+				simple, new RegionOfInterest(0, nrows, 0, frameWidth),
+				mono, rgb, RegionOfInterest.fullFrame(nrows, plan.getNcols()), plan, firstRow, lastRow);
+	}
+
+	/** Decodes rows [firstRow, lastRow) of a bayer8 image into several rasters at once.
+	 * Each output is only written inside its own region, and only the union of the regions
+	 * of the requested outputs is read from the bayer8 image.
+	 *
+	 * @param bayer bayer8 image
+	 * @param bw black and white output, or null
+	 * @param bwRegion rows and columns of the black and white output
+	 * @param simple simple color output, or null
+	 * @param simpleRegion rows and columns of the simple color output
+	 * @param mono monochrome output, or null
+	 * @param rgb rgb output, or null
+	 * @param displayRegion rows and columns of the monochrome and rgb outputs
+	 * @param plan channel offsets of the bayer8 image
+	 * @param firstRow first row to decode
+	 * @param lastRow row after the last row to decode
+	 */
+	public static void convertToFusedRasters(byte[] bayer, int[] bw, RegionOfInterest bwRegion,
+											 byte[] simple, RegionOfInterest simpleRegion,
+											 byte[] mono, int[] rgb, RegionOfInterest displayRegion,
+											 BayerPlan plan, int firstRow, int lastRow) {
+		convertToFusedRasters(bayer, bw, bwRegion, simple, simpleRegion, null, mono, rgb, displayRegion,
+				plan, firstRow, lastRow);
+	}
+
+	/** Decodes rows [firstRow, lastRow) of a bayer8 image into several rasters at once,
+	 * classifying simple colors with a lookup table
+	 *
+	 * @param bayer bayer8 image
+	 * @param bw black and white output, or null
+	 * @param bwRegion rows and columns of the black and white output
+	 * @param simple simple color output, or null
+	 * @param simpleRegion rows and columns of the simple color output
+	 * @param colors lookup table of the simple colors, or null to classify with SimpleThresholds
+	 * @param mono monochrome output, or null
+	 * @param rgb rgb output, or null
+	 * @param displayRegion rows and columns of the monochrome and rgb outputs
+	 * @param plan channel offsets of the bayer8 image
+	 * @param firstRow first row to decode
+	 * @param lastRow row after the last row to decode
+	 */
+	public static void convertToFusedRasters(byte[] bayer, int[] bw, RegionOfInterest bwRegion,
+											 byte[] simple, RegionOfInterest simpleRegion, SimpleColorTable colors,
+											 byte[] mono, int[] rgb, RegionOfInterest displayRegion,
+											 BayerPlan plan, int firstRow, int lastRow) {
+		convertToFusedRasters(bayer, bw, null, bwRegion, simple, simpleRegion, colors, mono, rgb, displayRegion,
+				plan, firstRow, lastRow);
+	}
+
+	/** Decodes rows [firstRow, lastRow) of a bayer8 image into several rasters at once,
+	 * packing the black and white pixels into a mask from the same threshold as the black and white raster
+	 *
+	 * @param bayer bayer8 image
+	 * @param bw black and white output, or null
+	 * @param bwMask cleared black and white mask output, the same size as the image, or null
+	 * @param bwRegion rows and columns of the black and white outputs
+	 * @param simple simple color output, or null
+	 * @param simpleRegion rows and columns of the simple color output
+	 * @param colors lookup table of the simple colors, or null to classify with SimpleThresholds
+	 * @param mono monochrome output, or null
+	 * @param rgb rgb output, or null
+	 * @param displayRegion rows and columns of the monochrome and rgb outputs
+	 * @param plan channel offsets of the bayer8 image
+	 * @param firstRow first row to decode
+	 * @param lastRow row after the last row to decode
+	 */
+	public static void convertToFusedRasters(byte[] bayer, int[] bw, BitMask bwMask, RegionOfInterest bwRegion,
+											 byte[] simple, RegionOfInterest simpleRegion, SimpleColorTable colors,
+											 byte[] mono, int[] rgb, RegionOfInterest displayRegion,
+											 BayerPlan plan, int firstRow, int lastRow) {
+		if (bayer == null) {
+			return;
+		}
+		int ncols = plan.getNcols(), colStride = plan.getColStride();
+		int redOffset = plan.getRedOffset(), greenOffset = plan.getGreenOffset(), blueOffset = plan.getBlueOffset();
+		boolean blackWhite = bw != null || bwMask != null;
+		boolean display = mono != null || rgb != null;
+
+		RegionOfInterest union = null;
+		if (blackWhite) {
+			union = bwRegion;
+		}
+		if (simple != null) {
+			union = simpleRegion.union(union);
+		}
+		if (display) {
+			union = displayRegion.union(union);
+		}
+		if (union == null) {
+			return;
+		}
+		firstRow = Math.max(firstRow, union.getFirstRow());
+		lastRow = Math.min(lastRow, union.getLastRow());
+
+		int bwFirst = bwRegion.getFirstCol(), bwLast = bwRegion.getLastCol();
+		int simpleFirst = simpleRegion.getFirstCol(), simpleLast = simpleRegion.getLastCol();
+		int displayFirst = displayRegion.getFirstCol(), displayLast = displayRegion.getLastCol();
+		int[] luminance = blackWhite ? getLuminanceRow(bwRegion.getWidth()) : null;
+		byte[] table = colors != null ? colors.getTable() : null;
+		int shift = colors != null ? colors.getShift() : 0, bits = 8 - shift;
+
+		for (int r = firstRow; r < lastRow; r++) {
+			boolean bwRow = blackWhite && bwRegion.containsRow(r);
+			boolean simpleRow = simple != null && simpleRegion.containsRow(r);
+			boolean displayRow = display && displayRegion.containsRow(r);
+
+			//columns read on this row are the union of the regions that cover it
+			int rowFirst = ncols, rowLast = 0;
+			if (bwRow) {
+				rowFirst = bwFirst;
+				rowLast = bwLast;
+			}
+			if (simpleRow) {
+				rowFirst = Math.min(rowFirst, simpleFirst);
+				rowLast = Math.max(rowLast, simpleLast);
+			}
+			if (displayRow) {
+				rowFirst = Math.min(rowFirst, displayFirst);
+				rowLast = Math.max(rowLast, displayLast);
+			}
+
+			int rowLuminance = 0;
+			int pos = plan.pixelIndex(r, rowFirst);
+			for (int c = rowFirst; c < rowLast; c++, pos += colStride) {
+				int R = (bayer[pos + redOffset]&0xFF);
+				int G = (bayer[pos + greenOffset]&0xFF);
+				int B = (bayer[pos + blueOffset]&0xFF);
+				if (simpleRow && c >= simpleFirst && c < simpleLast) {
+					if (table != null) {
+						simple[r*ncols+c] = table[(((R >> shift) << bits | (G >> shift)) << bits) | (B >> shift)];
+					} else {
+						simple[r*ncols+c] = classifySimpleColor(R, G, B);
+					}
+				}
+				if (bwRow && c >= bwFirst && c < bwLast) {
+					int sum = R + G + B;
+					luminance[c - bwFirst] = sum;
+					rowLuminance += sum;
+				}
+				if (displayRow && c >= displayFirst && c < displayLast) {
+					if (mono != null) {
+						mono[r * ncols + c] = (byte) ((((int) bayer[(r * ncols * 2 + c) * 2 + 1]) & 0xFF));
+					}
+					if (rgb != null) {
+						rgb[r*ncols + c] = (R<<16)+(G<<8)+B;
+					}
+				}
+			}
+			if (bwRow) {
+				thresholdBlackWhiteRow(luminance, rowLuminance, bw, bwMask, r, ncols, bwFirst, bwRegion.getWidth());
+			}
+		}
+	}
+
+	/** Returns this thread's luminance row, grown to at least width
+	 *
+	 * @param width number of pixels in the row
+	 */
+	private static int[] getLuminanceRow(int width) {
+		int[] luminance = luminanceRow.get();
+		if (luminance.length < width) {
+			luminance = new int[width];
+			luminanceRow.set(luminance);
+		}
+		return luminance;
+	}
+
+	/** Thresholds one row of summed R+G+B values the same way convertToBlackWhiteRaster does
+	 *
+	 * @param luminance R+G+B of each pixel in the row
+	 * @param rowLuminance sum of luminance over the row
+	 * @param mono black and white output, or null
+	 * @param mask cleared black and white mask output, or null
+	 * @param row row of the image being thresholded
+	 * @param ncols number of columns of pixels in the image
+	 * @param firstCol column of the first pixel of the row
+	 * @param frameWidth number of pixels in the row
+	 */
+	private static void thresholdBlackWhiteRow(int[] luminance, int rowLuminance, int[] mono, BitMask mask,
+											   int row, int ncols, int firstCol, int frameWidth) {
+		int pixelsAveraged = 3;
+		int borderWidth = pixelsAveraged >> 1; //int division
+		double threshold = luminanceMultiplier * rowLuminance * pixelsAveraged;
+		if (mono != null) {
+			int rowStart = row * ncols + firstCol;
+			for (int c = borderWidth; c < frameWidth-borderWidth; c++) {
+				int pix = luminance[c-1] + luminance[c] + luminance[c+1];
+				mono[rowStart + c] = pix * frameWidth > threshold ? 0xFFFFFF : 0;
+			}
+		}
+		if (mask != null) {
+			for (int c = borderWidth; c < frameWidth-borderWidth; c++) {
+				int pix = luminance[c-1] + luminance[c] + luminance[c+1];
+				if (pix * frameWidth > threshold) {
+					mask.set(firstCol + c, row);
 				}
 			}
 		}
@@ -345,14 +892,38 @@ public class ImageManipulator {
 	 * @param tile tiling pattern of the bayer8 image
 	 */
 	public static void convertToRGBRaster(byte[] bayer, int[] rgb, int nrows, int ncols, byte tile) {
+		convertToRGBRaster(bayer, rgb, new BayerPlan(tile, ncols, nrows));
+	}
+
+	/** Converts a bayer8 image to a rgb image
+	 *
+	 * @param bayer bayer8 image
+	 * @param rgb	rgb output
+	 * @param plan channel offsets of the bayer8 image
+	 */
+	public static void convertToRGBRaster(byte[] bayer, int[] rgb, BayerPlan plan) {
+		convertToRGBRaster(bayer, rgb, plan, RegionOfInterest.fullFrame(plan.getNrows(), plan.getNcols()));
+	}
+
+	/** Converts the region of a bayer8 image to a rgb image
+	 *
+	 * @param bayer bayer8 image
+	 * @param rgb	rgb output
+	 * @param plan channel offsets of the bayer8 image
+	 * @param region rows and columns to convert
+	 */
+	public static void convertToRGBRaster(byte[] bayer, int[] rgb, BayerPlan plan, RegionOfInterest region) {
 	    if (bayer == null) {
 	    	return;
 		}
-		for (int r = 0; r < nrows; r++) {
-			for (int c = 0; c < ncols; c++) {
-				int R = (bayer[getPos(c,r,combineTile((byte)0,tile),ncols,nrows)]&0xFF);
-				int G = (bayer[getPos(c,r,combineTile((byte)1,tile),ncols,nrows)]&0xFF);
-				int B = (bayer[getPos(c,r,combineTile((byte)3,tile),ncols,nrows)]&0xFF);
+		int ncols = plan.getNcols(), colStride = plan.getColStride();
+		int redOffset = plan.getRedOffset(), greenOffset = plan.getGreenOffset(), blueOffset = plan.getBlueOffset();
+		for (int r = region.getFirstRow(); r < region.getLastRow(); r++) {
+			int pos = plan.pixelIndex(r, region.getFirstCol());
+			for (int c = region.getFirstCol(); c < region.getLastCol(); c++, pos += colStride) {
+				int R = (bayer[pos + redOffset]&0xFF);
+				int G = (bayer[pos + greenOffset]&0xFF);
+				int B = (bayer[pos + blueOffset]&0xFF);
 				int pix =(R<<16)+(G<<8)+B;
 				rgb[r*ncols + c] = pix;
 			}
@@ -433,15 +1004,28 @@ public class ImageManipulator {
 	 * @param ncols number og columns of pixels in the image
 	 */
 	public static void findRoad(int[] bw, int[] output, int nrows, int ncols){
-		int rightEnd = 640, leftEnd = 0;
+		findRoad(bw, output, nrows, ncols, ROAD_REGION);
+	}
+
+	/** Converts a black and white image to a black white image with a colored road inside the region
+	 *
+	 * @param bw black and white
+	 * @param output image output in int[], black outside the region
+	 * @param nrows	number of rows of pixels in the image
+	 * @param ncols number og columns of pixels in the image
+	 * @param region rows and columns the road is searched in
+	 */
+	public static void findRoad(int[] bw, int[] output, int nrows, int ncols, RegionOfInterest region){
+		int rightEnd = region.getLastCol(), leftEnd = 0;
+		int edgeRow = region.getLastRow() - 2;
 		for(int i = ncols/2; i < ncols; i++){
-			if(bw[454*ncols + i] == 1){
+			if(bw[edgeRow*ncols + i] == 1){
 				rightEnd = i;
 			}
 		}
 
 		for(int i = ncols/2; i > 0; i--){
-			if(bw[454*ncols + i] == 1){
+			if(bw[edgeRow*ncols + i] == 1){
 				leftEnd = i;
 			}
 		}
@@ -449,7 +1033,7 @@ public class ImageManipulator {
 			boolean endFound = false;
 
 			for(int row = nrows-1; row > 0; row--){
-				if(col > 638 || row < 240 || row > 455){
+				if(!region.contains(row, col)){
 					output[row*ncols+col] = 0;
 				} else if(bw[row*ncols+col] == 0xFFFFFF){
 					endFound = true;
@@ -464,21 +1048,24 @@ public class ImageManipulator {
 	}
 
 	public static void byteRGB(byte[] bayer, byte[] rgb, int ncols, int nrows, byte tile){
-		//System.out.println(ncols+", "+nrows);
+		byteRGB(bayer, rgb, new BayerPlan(tile, ncols, nrows));
+	}
+
+	public static void byteRGB(byte[] bayer, byte[] rgb, BayerPlan plan){
+		int nrows = plan.getNrows(), ncols = plan.getNcols(), colStride = plan.getColStride();
+		int redOffset = plan.getRedOffset(), greenOffset = plan.getGreenOffset(), blueOffset = plan.getBlueOffset();
+		BayerPlan out = new BayerPlan((byte)4, ncols, nrows);
+		int outStride = out.getColStride();
+		int outRed = out.getRedOffset(), outGreen = out.getGreenOffset(), outBlue = out.getBlueOffset();
 
 		for(int r = 0; r<nrows;r++){
-			for(int c = 0; c<ncols;c++){
-				(rgb[getPos(c,r,combineTile((byte)0,(byte)4),ncols,nrows)])=(bayer[getPos(c,r,combineTile((byte)0,tile),ncols,nrows)]);
-				(rgb[getPos(c,r,combineTile((byte)1,(byte)4),ncols,nrows)])=(bayer[getPos(c,r,combineTile((byte)1,tile),ncols,nrows)]);
-				(rgb[getPos(c,r,combineTile((byte)3,(byte)4),ncols,nrows)])=(bayer[getPos(c,r,combineTile((byte)3,tile),ncols,nrows)]);
-				//System.out.println(getPos(c,r,combineTile((byte)0,(byte)4),ncols,nrows)+", "+getPos(c,r,combineTile((byte)1,(byte)4),ncols,nrows)+", "+getPos(c,r,combineTile((byte)3,(byte)4),ncols,nrows));
-				//System.out.println(getPos(c,r,combineTile((byte)0,tile),ncols,nrows)+", "+getPos(c,r,combineTile((byte)1,tile),ncols,nrows)+", "+getPos(c,r,combineTile((byte)3,tile),ncols,nrows));
-				//System.out.println();
+			int pos = plan.pixelIndex(r, 0);
+			int outPos = out.pixelIndex(r, 0);
+			for(int c = 0; c<ncols;c++, pos += colStride, outPos += outStride){
+				rgb[outPos + outRed] = bayer[pos + redOffset];
+				rgb[outPos + outGreen] = bayer[pos + greenOffset];
+				rgb[outPos + outBlue] = bayer[pos + blueOffset];
 			}
-			//System.out.println(getPos(ncols-1,r-1,combineTile((byte)0,tile),ncols,nrows)+", "+getPos(ncols-1,r-1,combineTile((byte)1,tile),ncols,nrows)+", "+getPos(ncols-1,r-1,combineTile((byte)3,tile),ncols,nrows));
-			//System.out.println(getPos(0,r,combineTile((byte)0,tile),ncols,nrows)+", "+getPos(0,r,combineTile((byte)1,tile),ncols,nrows)+", "+getPos(0,r,combineTile((byte)3,tile),ncols,nrows));
-
-			//System.out.println(getPos(0,r,combineTile((byte)0,(byte)4),ncols,nrows)+", "+getPos(0,r,combineTile((byte)1,(byte)4),ncols,nrows)+", "+getPos(0,r,combineTile((byte)3,(byte)4),ncols,nrows));
 		}
 	}
 
@@ -520,28 +1107,27 @@ public class ImageManipulator {
 	}
 
 	public static void smooth(byte[] input,byte[] output, int ncols, int nrows, byte tile){
+		smooth(input, output, new BayerPlan(tile, ncols, nrows));
+	}
+
+	public static void smooth(byte[] input, byte[] output, BayerPlan plan){
+		int nrows = plan.getNrows(), ncols = plan.getNcols(), colStride = plan.getColStride();
+		int redOffset = plan.getRedOffset(), greenOffset = plan.getGreenOffset();
+		int green2Offset = plan.getGreen2Offset(), blueOffset = plan.getBlueOffset();
 		for(int r = 0; r<nrows;r++){
-			output[getPos(0,r,combineTile((byte)0,tile),ncols,nrows)] = input[getPos(0,r,combineTile((byte)0,tile),ncols,nrows)];
-			int R2 = (input[getPos(0,r,combineTile((byte)0,tile),ncols,nrows)]&0xFF);
-			int G2 = (input[getPos(0,r,combineTile((byte)1,tile),ncols,nrows)]&0xFF);
-			int B2 = (input[getPos(0,r,combineTile((byte)3,tile),ncols,nrows)]&0xFF);
+			int pos = plan.pixelIndex(r, 0);
+			output[pos + redOffset] = input[pos + redOffset];
+			int R2 = (input[pos + redOffset]&0xFF);
+			int G2 = (input[pos + greenOffset]&0xFF);
+			int B2 = (input[pos + blueOffset]&0xFF);
 			double Y2 = R2 *  .299000 + G2 *  .587000 + B2 *  .114000;
 			double Y = Y2;
-			//output[getPos(ncols-1,r,combineTile((byte)0,tile),ncols,nrows,true)] = input[getPos(ncols-1,r,combineTile((byte)0,tile),ncols,nrows,true)];
-			for(int c = 1; c<ncols;c++){
-				//int R1 = (input[getPos(c-1,r,combineTile((byte)0,tile),ncols,nrows,true)]&0xFF);
-				//int G1 = (input[getPos(c-1,r,combineTile((byte)1,tile),ncols,nrows,true)]&0xFF);
-				//int B1 = (input[getPos(c-1,r,combineTile((byte)3,tile),ncols,nrows,true)]&0xFF);
-				R2 = (input[getPos(c,r,combineTile((byte)0,tile),ncols,nrows)]&0xFF);
-				G2 = (input[getPos(c,r,combineTile((byte)1,tile),ncols,nrows)]&0xFF);
-				B2 = (input[getPos(c,r,combineTile((byte)3,tile),ncols,nrows)]&0xFF);
-				//int R3 = (input[getPos(c+1,r,combineTile((byte)0,tile),ncols,nrows,true)]&0xFF);
-				//int G3 = (input[getPos(c+1,r,combineTile((byte)1,tile),ncols,nrows,true)]&0xFF);
-				//int B3 = (input[getPos(c+1,r,combineTile((byte)3,tile),ncols,nrows,true)]&0xFF);
-				//double Y1 = R1 *  .299000 + G1 *  .587000 + B1 *  .114000;
+			pos += colStride;
+			for(int c = 1; c<ncols;c++, pos += colStride){
+				R2 = (input[pos + redOffset]&0xFF);
+				G2 = (input[pos + greenOffset]&0xFF);
+				B2 = (input[pos + blueOffset]&0xFF);
 				Y2 = R2 *  .299000 + G2 *  .587000 + B2 *  .114000;
-				//double Y3 = R3 *  .299000 + G3 *  .587000 + B3 *  .114000;
-				//double Y = (Y1+Y2*2+Y3)/4;
 				Y += Y2;
 				Y/=2;
 				double U  = R2 * -.168736 + G2 * -.331264 + B2 *  .500000 + 128;
@@ -549,10 +1135,10 @@ public class ImageManipulator {
 				double R = Y + 1.4075 * (V - 128);
 				double G = Y - 0.3455 * (U - 128) - (0.7169 * (V - 128));
 				double B = Y + 1.7790 * (U - 128);
-				output[getPos(c,r,combineTile((byte)0,tile),ncols,nrows)] = (byte)R;
-				output[getPos(c,r,combineTile((byte)1,tile),ncols,nrows)] = (byte)G;
-				output[getPos(c,r,combineTile((byte)2,tile),ncols,nrows)] = (byte)G;
-				output[getPos(c,r,combineTile((byte)3,tile),ncols,nrows)] = (byte)B;
+				output[pos + redOffset] = (byte)R;
+				output[pos + greenOffset] = (byte)G;
+				output[pos + green2Offset] = (byte)G;
+				output[pos + blueOffset] = (byte)B;
 			}
 		}
 	}
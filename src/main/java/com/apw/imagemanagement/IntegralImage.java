@@ -0,0 +1,80 @@
+package com.apw.imagemanagement;
+
+/**
+ * Summed-area table of the luminance (R + G + B) of a region of a bayer8 image.
+ * Once computed, the total luminance of any rectangle in the region is found with four lookups,
+ * so box averages cost the same for any window size.
+ *
+ * The table is kept between frames and only reallocated when the region grows.
+ *
+ * @see ImageManipulator#convertToAdaptiveBlackWhiteRaster(IntegralImage, int[], int, RegionOfInterest, int)
+ */
+public class IntegralImage {
+
+    private int[] sums = new int[0];
+    private int firstRow, lastRow, firstCol, lastCol;
+    //columns in a row of the table, one more than the region so row and column 0 are all zero
+    private int stride;
+
+    /**
+     * Builds the table for a region of a bayer8 image
+     * @param bayer bayer8 image
+     * @param plan channel offsets of the bayer8 image
+     * @param region rows and columns to sum
+     */
+    public void compute(byte[] bayer, BayerPlan plan, RegionOfInterest region) {
+        firstRow = region.getFirstRow();
+        lastRow = region.getLastRow();
+        firstCol = region.getFirstCol();
+        lastCol = region.getLastCol();
+        stride = region.getWidth() + 1;
+        int size = stride * (region.getHeight() + 1);
+        if (sums.length < size) {
+            sums = new int[size];
+        }
+        for (int c = 0; c < stride; c++) {
+            sums[c] = 0;
+        }
+
+        int colStride = plan.getColStride();
+        int redOffset = plan.getRedOffset(), greenOffset = plan.getGreenOffset(), blueOffset = plan.getBlueOffset();
+        for (int r = firstRow; r < lastRow; r++) {
+            int above = (r - firstRow) * stride;
+            int row = above + stride;
+            sums[row] = 0;
+            int rowSum = 0;
+            int pos = plan.pixelIndex(r, firstCol);
+            for (int c = 1; c < stride; c++, pos += colStride) {
+                rowSum += (bayer[pos + redOffset]&0xFF) + (bayer[pos + greenOffset]&0xFF) + (bayer[pos + blueOffset]&0xFF);
+                sums[row + c] = sums[above + c] + rowSum;
+            }
+        }
+    }
+
+    /**
+     * Total luminance of the rectangle rows [top, bottom) and columns [left, right),
+     * clipped to the region the table was computed for
+     * @return sum of R + G + B over the rectangle
+     */
+    public int sum(int top, int left, int bottom, int right) {
+        top = clip(top, firstRow, lastRow) - firstRow;
+        bottom = clip(bottom, firstRow, lastRow) - firstRow;
+        left = clip(left, firstCol, lastCol) - firstCol;
+        right = clip(right, firstCol, lastCol) - firstCol;
+        return sums[bottom * stride + right] - sums[top * stride + right]
+                - sums[bottom * stride + left] + sums[top * stride + left];
+    }
+
+    /**
+     * Number of pixels of the rectangle rows [top, bottom) and columns [left, right) inside the region
+     */
+    public int area(int top, int left, int bottom, int right) {
+        int height = clip(bottom, firstRow, lastRow) - clip(top, firstRow, lastRow);
+        int width = clip(right, firstCol, lastCol) - clip(left, firstCol, lastCol);
+        return height * width;
+    }
+
+    private static int clip(int value, int min, int max) {
+        return value < min ? min : (value > max ? max : value);
+    }
+}
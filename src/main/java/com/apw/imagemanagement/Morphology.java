@@ -0,0 +1,179 @@
+package com.apw.imagemanagement;
+
+import java.util.Arrays;
+
+/**
+ * Erodes and dilates black and white rasters with a square structuring element of any odd size.
+ *
+ * The square is separable, so each pass counts white pixels in a sliding window along the row,
+ * then counts those results in a sliding window down each column. Both counts are updated by
+ * adding the pixel entering the window and removing the one leaving it, so the cost per pixel
+ * does not grow with the size of the square. The image is changed in place; the row results
+ * still needed by the column window are kept in a small ring of rows.
+ *
+ * A pixel outside the image counts as black, which matches ImageManipulator.removeNoise
+ * and ImageManipulator.dilate for a size of 3.
+ *
+ * @see ImageManagementModule#setMorphology(Morphology.Operation, int)
+ */
+public class Morphology {
+
+    /**
+     * Operations that can be applied to a black and white raster
+     *      NONE leaves the raster unchanged
+     *      ERODE keeps a pixel white only if the whole square around it is white
+     *      DILATE makes a pixel white if any pixel in the square around it is white
+     *      OPEN erodes then dilates, removing white specks
+     *      CLOSE dilates then erodes, filling black gaps
+     */
+    public enum Operation {
+        NONE,
+        ERODE,
+        DILATE,
+        OPEN,
+        CLOSE
+    }
+
+    private static final int WHITE = 0xFFFFFF;
+
+    private final int size;
+    private final int radius;
+
+    //row results of the rows in the column window, indexed by row % (size + 1)
+    private int[][] ring = new int[0][];
+    private int[] columnCounts = new int[0];
+
+    /**
+     * @param size width and height of the square structuring element, must be odd
+     */
+    public Morphology(int size) {
+        if (size < 1 || size % 2 == 0) {
+            throw new IllegalArgumentException("Structuring element size must be odd and positive: " + size);
+        }
+        this.size = size;
+        radius = size / 2;
+    }
+
+    /**
+     * Applies an operation in place to the region of a black and white raster,
+     * pixels outside the region are read but never changed
+     * @param operation operation to apply
+     * @param pixels black and white raster, formatted in 1D array of integers 0xRRGGBB
+     * @param nrows number of rows of pixels in the image
+     * @param ncols number of columns of pixels in the image
+     * @param region rows and columns to change
+     */
+    public synchronized void apply(Operation operation, int[] pixels, int nrows, int ncols, RegionOfInterest region) {
+        switch (operation) {
+            case NONE:
+                break;
+            case ERODE:
+                pass(pixels, nrows, ncols, region, true);
+                break;
+            case DILATE:
+                pass(pixels, nrows, ncols, region, false);
+                break;
+            case OPEN:
+                pass(pixels, nrows, ncols, region, true);
+                pass(pixels, nrows, ncols, region, false);
+                break;
+            case CLOSE:
+                pass(pixels, nrows, ncols, region, false);
+                pass(pixels, nrows, ncols, region, true);
+                break;
+            default:
+                throw new IllegalStateException("No morphology operation: " + operation);
+        }
+    }
+
+    public void erode(int[] pixels, int nrows, int ncols, RegionOfInterest region) {
+        apply(Operation.ERODE, pixels, nrows, ncols, region);
+    }
+
+    public void dilate(int[] pixels, int nrows, int ncols, RegionOfInterest region) {
+        apply(Operation.DILATE, pixels, nrows, ncols, region);
+    }
+
+    /**
+     * One erosion or dilation of the region
+     * @param erode true to erode, false to dilate
+     */
+    private void pass(int[] pixels, int nrows, int ncols, RegionOfInterest region, boolean erode) {
+        int firstCol = region.getFirstCol(), lastCol = region.getLastCol();
+        int firstRow = region.getFirstRow(), lastRow = region.getLastRow();
+        if (firstRow >= lastRow || firstCol >= lastCol) {
+            return;
+        }
+        ensureBuffers(ncols);
+        int[] counts = columnCounts;
+        Arrays.fill(counts, firstCol, lastCol, 0);
+
+        //a white pixel needs the whole window white to survive erosion, and any white pixel in it for dilation
+        int threshold = erode ? size : 1;
+
+        //prime the column window with the rows above the first output row
+        for (int y = firstRow - radius; y < firstRow + radius; y++) {
+            addRow(pixels, nrows, ncols, y, firstCol, lastCol, threshold, counts);
+        }
+        for (int r = firstRow; r < lastRow; r++) {
+            //the row entering the window is read before it is overwritten, since r + radius >= r
+            addRow(pixels, nrows, ncols, r + radius, firstCol, lastCol, threshold, counts);
+            int[] leaving = ring[slot(r - radius)];
+            int rowStart = r * ncols;
+            for (int c = firstCol; c < lastCol; c++) {
+                pixels[rowStart + c] = counts[c] >= threshold ? WHITE : 0;
+                counts[c] -= leaving[c];
+            }
+        }
+    }
+
+    /**
+     * Computes the row result of row y into the ring and adds it to the column counts.
+     * The row result is 1 where the row window around a pixel passes the threshold.
+     */
+    private void addRow(int[] pixels, int nrows, int ncols, int y, int firstCol, int lastCol,
+                        int threshold, int[] counts) {
+        int[] row = ring[slot(y)];
+        if (y < 0 || y >= nrows) {
+            Arrays.fill(row, firstCol, lastCol, 0);
+            return;
+        }
+        int rowStart = y * ncols;
+        //white pixels in the window [firstCol - radius, firstCol + radius), clipped to the image
+        int count = 0;
+        for (int c = Math.max(0, firstCol - radius); c < Math.min(ncols, firstCol + radius); c++) {
+            if (pixels[rowStart + c] == WHITE) {
+                count++;
+            }
+        }
+        for (int c = firstCol; c < lastCol; c++) {
+            int entering = c + radius;
+            if (entering < ncols && pixels[rowStart + entering] == WHITE) {
+                count++;
+            }
+            int hit = count >= threshold ? 1 : 0;
+            row[c] = hit;
+            counts[c] += hit;
+            int leaving = c - radius;
+            if (leaving >= 0 && pixels[rowStart + leaving] == WHITE) {
+                count--;
+            }
+        }
+    }
+
+    private int slot(int y) {
+        //rows above the image are negative
+        return ((y % (size + 1)) + size + 1) % (size + 1);
+    }
+
+    private void ensureBuffers(int ncols) {
+        if (columnCounts.length != ncols) {
+            columnCounts = new int[ncols];
+            ring = new int[size + 1][ncols];
+        }
+    }
+
+    public int getSize() {
+        return size;
+    }
+}
@@ -0,0 +1,160 @@
+package com.apw.imagemanagement;
+
+import com.apw.apw3.DriverCons;
+import com.apw.apw3.TrakSim;
+import com.apw.speedcon.Constants;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A set of bayer8 camera frames saved to disk, so image processing can be measured and
+ * compared on the same real images away from the car.
+ *
+ * Each frame is one file holding a magic number, the width, height and tile of the image,
+ * followed by the bayer8 bytes. Frames are loaded in file name order.
+ *
+ * @see FrameRecorder
+ */
+public class RecordedFrames {
+
+    public static final String EXTENSION = ".bayer";
+    private static final int MAGIC = 0x42415952; // "BAYR"
+
+    private final int width, height;
+    private final byte tile;
+    private final List<byte[]> frames;
+
+    public RecordedFrames(int width, int height, byte tile, List<byte[]> frames) {
+        this.width = width;
+        this.height = height;
+        this.tile = tile;
+        this.frames = Collections.unmodifiableList(new ArrayList<>(frames));
+    }
+
+    /**
+     * Saves one frame
+     * @param file file to write
+     * @param bayer bayer8 image
+     * @param width number of columns of pixels in the image
+     * @param height number of rows of pixels in the image
+     * @param tile tiling pattern of the bayer8 image
+     */
+    public static void write(File file, byte[] bayer, int width, int height, byte tile) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(width);
+            out.writeInt(height);
+            out.writeByte(tile);
+            out.write(bayer, 0, width * height * 4);
+        }
+    }
+
+    /**
+     * Loads every frame in a directory, which must all have the same size and tile
+     * @param directory directory holding .bayer files
+     * @return the frames, in file name order
+     */
+    public static RecordedFrames load(File directory) throws IOException {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(EXTENSION));
+        if (files == null || files.length == 0) {
+            throw new IOException("No " + EXTENSION + " frames in " + directory);
+        }
+        Arrays.sort(files);
+        int width = -1, height = -1;
+        byte tile = 0;
+        List<byte[]> frames = new ArrayList<>();
+        for (File file : files) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                if (in.readInt() != MAGIC) {
+                    throw new IOException("Not a recorded frame: " + file);
+                }
+                int frameWidth = in.readInt();
+                int frameHeight = in.readInt();
+                byte frameTile = in.readByte();
+                if (frames.isEmpty()) {
+                    width = frameWidth;
+                    height = frameHeight;
+                    tile = frameTile;
+                } else if (frameWidth != width || frameHeight != height || frameTile != tile) {
+                    throw new IOException("Frame " + file + " does not match the size and tile of the first frame");
+                }
+                byte[] bayer = new byte[width * height * 4];
+                in.readFully(bayer);
+                frames.add(bayer);
+            }
+        }
+        return new RecordedFrames(width, height, tile, frames);
+    }
+
+    /**
+     * Renders frames of the TrakSim track, for when no recorded frames are available.
+     * TrakSim reads its track images from the working directory.
+     * The car drives straight ahead at the slowest speed SpeedControl uses, so the frames move along the track.
+     * @param count number of frames, each one simulation step after the last
+     */
+    public static RecordedFrames simulate(int count) {
+        int height = DriverCons.D_ImHi;
+        int width = TrakSim.WinWi;
+        TrakSim sim = new TrakSim();
+        sim.StartPatty("FlyCam");
+        sim.StartImage(height, width, 1);
+        sim.SetServo(DriverCons.D_GasServo, 90 + (int) Constants.MIN_SPEED);
+        List<byte[]> frames = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            byte[] bayer = new byte[width * height * 4];
+            sim.GetSimFrame(height, width, bayer);
+            sim.SimStep(1);
+            frames.add(bayer);
+        }
+        return new RecordedFrames(width, height, (byte) DriverCons.D_BayTile, frames);
+    }
+
+    /**
+     * Loads the frames in a directory, or simulates some if it holds none
+     * @param directory directory holding .bayer files
+     * @param simulated number of frames to simulate if there are no recorded frames
+     */
+    public static RecordedFrames loadOrSimulate(File directory, int simulated) {
+        try {
+            return load(directory);
+        } catch (IOException e) {
+            System.err.println(e.getMessage() + ", using " + simulated + " simulated frames");
+            return simulate(simulated);
+        }
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public byte getTile() {
+        return tile;
+    }
+
+    public int size() {
+        return frames.size();
+    }
+
+    /**
+     * @param index index of the frame, wraps around past the last frame
+     * @return bayer8 image of the frame
+     */
+    public byte[] get(int index) {
+        return frames.get(Math.floorMod(index, frames.size()));
+    }
+}
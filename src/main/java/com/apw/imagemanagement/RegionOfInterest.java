@@ -0,0 +1,103 @@
+package com.apw.imagemanagement;
+
+/**
+ * Rectangle of an image that a consumer reads, rows [firstRow, lastRow) and
+ * columns [firstCol, lastCol). Conversions only compute pixels inside the region
+ * and leave the rest of their output untouched.
+ *
+ * @see ImageManagementModule#setRegion(ImageManagementModule.Consumer, RegionOfInterest)
+ */
+public class RegionOfInterest {
+
+    private final int firstRow, lastRow;
+    private final int firstCol, lastCol;
+
+    /**
+     * @param firstRow first row in the region
+     * @param lastRow row after the last row in the region
+     * @param firstCol first column in the region
+     * @param lastCol column after the last column in the region
+     */
+    public RegionOfInterest(int firstRow, int lastRow, int firstCol, int lastCol) {
+        if (firstRow < 0 || firstCol < 0 || lastRow < firstRow || lastCol < firstCol) {
+            throw new IllegalArgumentException("Invalid region rows " + firstRow + "-" + lastRow
+                    + " columns " + firstCol + "-" + lastCol);
+        }
+        this.firstRow = firstRow;
+        this.lastRow = lastRow;
+        this.firstCol = firstCol;
+        this.lastCol = lastCol;
+    }
+
+    /**
+     * Region covering a whole image
+     * @param nrows number of rows of pixels in the image
+     * @param ncols number of columns of pixels in the image
+     * @return region of every pixel in the image
+     */
+    public static RegionOfInterest fullFrame(int nrows, int ncols) {
+        return new RegionOfInterest(0, nrows, 0, ncols);
+    }
+
+    /**
+     * Smallest region containing both regions
+     * @param other region to combine with, may be null
+     * @return region containing this and other
+     */
+    public RegionOfInterest union(RegionOfInterest other) {
+        if (other == null) {
+            return this;
+        }
+        return new RegionOfInterest(Math.min(firstRow, other.firstRow), Math.max(lastRow, other.lastRow),
+                Math.min(firstCol, other.firstCol), Math.max(lastCol, other.lastCol));
+    }
+
+    /**
+     * Part of this region inside rows [firstRow, lastRow), used to split a region into row bands
+     * @param firstRow first row to keep
+     * @param lastRow row after the last row to keep
+     * @return the clipped region, which may have no rows
+     */
+    public RegionOfInterest clipRows(int firstRow, int lastRow) {
+        int first = Math.max(firstRow, this.firstRow);
+        int last = Math.max(first, Math.min(lastRow, this.lastRow));
+        return new RegionOfInterest(first, last, firstCol, lastCol);
+    }
+
+    public boolean contains(int row, int col) {
+        return row >= firstRow && row < lastRow && col >= firstCol && col < lastCol;
+    }
+
+    public boolean containsRow(int row) {
+        return row >= firstRow && row < lastRow;
+    }
+
+    public int getFirstRow() {
+        return firstRow;
+    }
+
+    public int getLastRow() {
+        return lastRow;
+    }
+
+    public int getFirstCol() {
+        return firstCol;
+    }
+
+    public int getLastCol() {
+        return lastCol;
+    }
+
+    public int getWidth() {
+        return lastCol - firstCol;
+    }
+
+    public int getHeight() {
+        return lastRow - firstRow;
+    }
+
+    @Override
+    public String toString() {
+        return "RegionOfInterest rows " + firstRow + "-" + lastRow + " columns " + firstCol + "-" + lastCol;
+    }
+}
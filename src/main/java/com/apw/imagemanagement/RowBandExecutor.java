@@ -0,0 +1,94 @@
+package com.apw.imagemanagement;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs a row-independent conversion in parallel by splitting the image into bands of rows.
+ * Each band is converted by one worker of a shared ForkJoinPool, and run() returns once
+ * every band is done, so callers see the same behavior as the single-threaded conversion.
+ * Executors with the same parallelism share one pool, whose daemon workers are never shut down,
+ * so replacing an executor does not stop the conversions still running on it.
+ *
+ * @see ImageManagementModule#setParallel(ImageManagementModule.Conversion, boolean)
+ */
+public class RowBandExecutor {
+
+    /**
+     * A conversion over the rows [firstRow, lastRow) of an image
+     */
+    public interface RowTask {
+        void run(int firstRow, int lastRow);
+    }
+
+    private static final ConcurrentHashMap<Integer, ForkJoinPool> pools = new ConcurrentHashMap<>();
+
+    private final ForkJoinPool pool;
+    private volatile int bandHeight;
+
+    /**
+     * @param parallelism number of worker threads
+     * @param bandHeight number of rows converted by each task
+     */
+    public RowBandExecutor(int parallelism, int bandHeight) {
+        pool = pools.computeIfAbsent(parallelism, ForkJoinPool::new);
+        setBandHeight(bandHeight);
+    }
+
+    /**
+     * Converts the rows [firstRow, lastRow), returning when all of them are done
+     * @param firstRow first row to convert
+     * @param lastRow row after the last row to convert
+     * @param task conversion of a band of rows
+     */
+    public void run(int firstRow, int lastRow, RowTask task) {
+        if (lastRow - firstRow <= bandHeight) {
+            task.run(firstRow, lastRow);
+            return;
+        }
+        pool.invoke(new BandAction(firstRow, lastRow, bandHeight, task));
+    }
+
+    public int getBandHeight() {
+        return bandHeight;
+    }
+
+    public void setBandHeight(int bandHeight) {
+        if (bandHeight < 1) {
+            throw new IllegalArgumentException("Band height must be positive: " + bandHeight);
+        }
+        this.bandHeight = bandHeight;
+    }
+
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    private static class BandAction extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int firstRow, lastRow, bandHeight;
+        private final RowTask task;
+
+        BandAction(int firstRow, int lastRow, int bandHeight, RowTask task) {
+            this.firstRow = firstRow;
+            this.lastRow = lastRow;
+            this.bandHeight = bandHeight;
+            this.task = task;
+        }
+
+        @Override
+        protected void compute() {
+            if (lastRow - firstRow <= bandHeight) {
+                task.run(firstRow, lastRow);
+                return;
+            }
+            //split on a band boundary so bands stay bandHeight rows tall
+            int bands = (lastRow - firstRow + bandHeight - 1) / bandHeight;
+            int middle = firstRow + (bands / 2) * bandHeight;
+            invokeAll(new BandAction(firstRow, middle, bandHeight, task),
+                    new BandAction(middle, lastRow, bandHeight, task));
+        }
+    }
+}
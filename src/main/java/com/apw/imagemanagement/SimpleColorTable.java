@@ -0,0 +1,139 @@
+package com.apw.imagemanagement;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Precomputed simple color of every rgb value, so classifying a pixel is a single table load
+ * instead of the YUV round trip in ImageManipulator.classifySimpleColor().
+ *
+ * Each channel is quantized to bitsPerChannel bits, and every rgb value in a quantization
+ * bucket gets the color of the bucket's center. With 8 bits per channel the table is exact.
+ *
+ * The table is rebuilt when the thresholds change. rebuildAsync() builds the new table on a
+ * background thread and swaps it in when it is complete, so frames being converted meanwhile
+ * keep using the old table and the frame loop never waits for a rebuild.
+ *
+ * @see ImageManagementModule#setColorThresholds(ColorThresholds)
+ */
+public class SimpleColorTable {
+
+    private final int bitsPerChannel;
+    private final int shift;
+
+    private volatile byte[] table;
+    private volatile ColorThresholds thresholds;
+
+    //thresholds waiting for a rebuild, only the latest is built
+    private final AtomicReference<ColorThresholds> pending = new AtomicReference<>();
+    private final ExecutorService rebuilder = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "SimpleColorTable rebuild");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Builds the table for the given thresholds before returning
+     * @param bitsPerChannel bits kept of each of R, G and B, 1-8
+     * @param thresholds thresholds to classify with
+     */
+    public SimpleColorTable(int bitsPerChannel, ColorThresholds thresholds) {
+        if (bitsPerChannel < 1 || bitsPerChannel > 8) {
+            throw new IllegalArgumentException("Bits per channel must be 1-8: " + bitsPerChannel);
+        }
+        this.bitsPerChannel = bitsPerChannel;
+        shift = 8 - bitsPerChannel;
+        rebuild(thresholds);
+    }
+
+    /**
+     * Builds the table for new thresholds on the calling thread
+     * @param thresholds thresholds to classify with
+     */
+    public void rebuild(ColorThresholds thresholds) {
+        byte[] built = build(thresholds);
+        synchronized (this) {
+            table = built;
+            this.thresholds = thresholds;
+        }
+    }
+
+    /**
+     * Builds the table for new thresholds on a background thread and swaps it in when done.
+     * If several rebuilds are requested before one starts, only the latest is built.
+     * @param thresholds thresholds to classify with
+     * @return completes once the table for these or later thresholds is in use
+     */
+    public Future<?> rebuildAsync(ColorThresholds thresholds) {
+        pending.set(thresholds);
+        return rebuilder.submit(() -> {
+            ColorThresholds next = pending.getAndSet(null);
+            if (next != null) {
+                rebuild(next);
+            }
+        });
+    }
+
+    private byte[] build(ColorThresholds thresholds) {
+        int levels = 1 << bitsPerChannel;
+        //value in the middle of each quantization bucket
+        int center = (1 << shift) >> 1;
+        byte[] built = new byte[levels * levels * levels];
+        int i = 0;
+        for (int r = 0; r < levels; r++) {
+            for (int g = 0; g < levels; g++) {
+                for (int b = 0; b < levels; b++) {
+                    built[i++] = ImageManipulator.classifySimpleColor(
+                            (r << shift) + center, (g << shift) + center, (b << shift) + center, thresholds);
+                }
+            }
+        }
+        return built;
+    }
+
+    /**
+     * @param R red value of the pixel, 0-255
+     * @param G green value of the pixel, 0-255
+     * @param B blue value of the pixel, 0-255
+     * @return simple color code, 0-6
+     */
+    public byte classify(int R, int G, int B) {
+        return table[index(R, G, B)];
+    }
+
+    /**
+     * @return position of an rgb value in the table
+     */
+    public int index(int R, int G, int B) {
+        return (((R >> shift) << bitsPerChannel | (G >> shift)) << bitsPerChannel) | (B >> shift);
+    }
+
+    /**
+     * The current table, for loops that read it once and index it directly.
+     * A rebuild replaces the array rather than changing it, so the returned table never changes.
+     */
+    public byte[] getTable() {
+        return table;
+    }
+
+    public ColorThresholds getThresholds() {
+        return thresholds;
+    }
+
+    public int getBitsPerChannel() {
+        return bitsPerChannel;
+    }
+
+    public int getShift() {
+        return shift;
+    }
+
+    /**
+     * Stops the rebuild thread, rebuildAsync() must not be called afterwards
+     */
+    public void shutdown() {
+        rebuilder.shutdown();
+    }
+}
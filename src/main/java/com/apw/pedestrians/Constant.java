@@ -22,6 +22,15 @@ public class Constant {
     public static int LIGHT_DARK_THRESHOLD = 381;
 
 
+    /*
+     * BlobDetection
+     */
+
+    //how blobs are found: 1 BlobDetection, 2 a union-find of pixels (UnionFindBlobDetection),
+    //3 a union-find of the runs of each row (RunBlobDetection)
+    public static int BLOB_DETECTION_VERSION = 3;
+
+
     /*
      * MovingBlobDetection
      */
@@ -33,6 +42,9 @@ public class Constant {
     public static int DISTANCE_LIMIT_X = 50;
     public static int DISTANCE_LIMIT_Y = 30;
 
+    //match blobs by the least total distance (AuctionAssignment) instead of closest pair first
+    public static boolean OPTIMAL_BLOB_MATCHING = false;
+
     //maximum size difference in pixels between blobs that can be matched
     public static int MAX_CHANGE_WIDTH = 75;
     public static int MAX_CHANGE_HEIGHT = 75;
@@ -3,25 +3,22 @@ package com.apw.pedestrians;
 import com.apw.pedestrians.blobdetect.Blob;
 import com.apw.pedestrians.blobdetect.BlobDetection;
 import com.apw.pedestrians.blobdetect.PrimitiveBlobDetection;
+import com.apw.pedestrians.blobdetect.RunBlobDetection;
+import com.apw.pedestrians.blobdetect.UnionFindBlobDetection;
 import com.apw.pedestrians.blobfilter.BlobFilter;
 import com.apw.pedestrians.blobtrack.MovingBlob;
 import com.apw.pedestrians.blobtrack.MovingBlobDetection;
-import com.apw.pedestrians.image.Color;
-import com.apw.pedestrians.image.Pixel;
 
-import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 
 public class PedestrianDetector {
-    private static final Pixel[] pixels = Arrays.stream(Color.values()).map(Pixel::new).toArray(Pixel[]::new);
-
     private BlobDetection blobDetection;
     private MovingBlobDetection movingBlobDetection;
     private BlobFilter blobFilter;
 
     public PedestrianDetector() {
-        this(new BlobDetection(), new MovingBlobDetection(), new BlobFilter());
+        this(createBlobDetection(), new MovingBlobDetection(), new BlobFilter());
 //        this(new PrimitiveBlobDetection(), new MovingBlobDetection(), new BlobFilter());
     }
 
@@ -31,20 +28,23 @@ public class PedestrianDetector {
         this.blobFilter = blobFilter;
     }
 
+    private static BlobDetection createBlobDetection() {
+        switch (Constant.BLOB_DETECTION_VERSION) {
+            case 2:
+                return new UnionFindBlobDetection();
+            case 3:
+                return new RunBlobDetection();
+            default:
+                return new BlobDetection();
+        }
+    }
+
     public List<MovingBlob> getAllBlobs(byte[] colors, int width) {
     	if(colors == null) {
     		return new LinkedList<>();
     	}
-    	
-        int height = colors.length / width;
-        Pixel[][] image = new Pixel[height][width];
-        for (int i = 0; i < colors.length; i++) {
-            int row = i / width;
-            int col = i % width;
-            image[row][col] = pixels[colors[i]];
-        }
 
-        List<Blob> knownBlobs = blobDetection.getBlobs(image);
+        List<Blob> knownBlobs = blobDetection.getBlobs(colors, width);
         return movingBlobDetection.getMovingBlobs(knownBlobs);
     }
 
@@ -11,123 +11,146 @@ import static java.lang.Math.min;
 public class BlobDetection {
     public static final int MAXIMUM_DIFFERENCE_IN_WIDTH_BETWEEN_TWO_BLOBS_IN_ORDER_TO_JOIN = 75;
 
+    private static final Pixel[] pixelColors = Arrays.stream(Color.values()).map(Pixel::new).toArray(Pixel[]::new);
+
     //creates data structures to organize different stages of blobs
     private Deque<Blob> unusedBlobs = new ArrayDeque<>();
     private Deque<BlobInProgress> unusedBips = new ArrayDeque<>();
-    private BlobInProgress[][] bips = null;
+    private BlobInProgress[] bips = null; //blob in progress of each pixel, row by row
     private Set<Integer> added = new HashSet<>();
     private List<Blob> blobs = new LinkedList<>();
+    private byte[] simple; //colors of the last Pixel image, for the adapter
 
+    /**
+     * Finds the blobs of an image of Pixels, by copying their colors into a simple color plane
+     */
     public List<Blob> getBlobs(Pixel[][] pixels) {
+        final int width = pixels[0].length;
+        final int height = pixels.length;
+        if (simple == null || simple.length != width * height) {
+            simple = new byte[width * height];
+        }
+        for (int row = 0; row < height; row++) {
+            for (int col = 0; col < width; col++) {
+                simple[row * width + col] = (byte) pixels[row][col].getColor().ordinal();
+            }
+        }
+        return getBlobs(simple, width);
+    }
+
+    /**
+     * Finds the blobs of a simple color plane
+     *
+     * @param colors simple color of each pixel, as a Color ordinal
+     * @param width pixels in a row
+     * @return the blobs of the image
+     */
+    public List<Blob> getBlobs(byte[] colors, int width) {
+        final int height = colors.length / width;
         unusedBlobs.addAll(blobs);
         blobs.clear();
 
         //there are no blobs in progress, creates a new array of blobs in progress
-        if (bips == null || pixels.length != bips.length || pixels[0].length != bips[0].length) {
-            bips = new BlobInProgress[pixels.length][pixels[0].length];
+        if (bips == null || bips.length != colors.length) {
+            bips = new BlobInProgress[colors.length];
         }
         //otherwise it empties the array of blob in progress
         else {
             for (int i = 0; i < bips.length; i++) {
-                for (int j = 0; j < bips[0].length; j++) {
-                    BlobInProgress bip = bips[i][j];
-                    if (bip != null) {
-                        bips[i][j] = null;
-                        if (!added.contains(bip.id)) {
-                            added.add(bip.id);
-                            unusedBips.push(bip);
-                        }
+                BlobInProgress bip = bips[i];
+                if (bip != null) {
+                    bips[i] = null;
+                    if (!added.contains(bip.id)) {
+                        added.add(bip.id);
+                        unusedBips.push(bip);
                     }
                 }
             }
 
             added.clear();
         }
-      
+
     	//goes along the pixels of the image
-        for (int row = 0; row < pixels.length; row++) {
-            for (int col = 0; col < pixels[0].length - 1; col++) {
-                Pixel pix1 = pixels[row][col];
-                Pixel pix2 = pixels[row][col + 1];
+        for (int row = 0; row < height; row++) {
+            for (int col = 0; col < width - 1; col++) {
+                int index = row * width + col;
 
-                if (pix1.getColor() == pix2.getColor())// matching
+                if (colors[index] == colors[index + 1])// matching
                 {
                     //either adds to the bip if there is an existing one or creates a new one if there isn't
-                    if (bips[row][col] != null) {
-                        bips[row][col].right = max(bips[row][col].right, col + 1);
+                    if (bips[index] != null) {
+                        bips[index].right = max(bips[index].right, col + 1);
                     } else {
-                        bips[row][col] = getBip(row, col, row, col + 1, pixels[row][col]);
+                        bips[index] = getBip(row, col, row, col + 1, pixelColors[colors[index]]);
                     }
 
-                    bips[row][col + 1] = bips[row][col];
+                    bips[index + 1] = bips[index];
                 }
             }
         }
 
-        for (int row = 0; row < pixels.length - 1; row++) {
-            for (int col = 0; col < pixels[0].length; col++) {
-                Pixel pix1 = pixels[row][col];
-                Pixel pix2 = pixels[row + 1][col];
+        for (int row = 0; row < height - 1; row++) {
+            for (int col = 0; col < width; col++) {
+                int index = row * width + col;
+                int below = index + width;
 
                 //merges pixels that are vertically nearby and of same color
-                if (pix1.getColor() == pix2.getColor() && bips[row + 1][col] != null && bips[row][col] != null
-                        && Math.abs(bips[row + 1][col].width() - bips[row][col]
+                if (colors[index] == colors[below] && bips[below] != null && bips[index] != null
+                        && Math.abs(bips[below].width() - bips[index]
                         .width()) <= MAXIMUM_DIFFERENCE_IN_WIDTH_BETWEEN_TWO_BLOBS_IN_ORDER_TO_JOIN) {
-                    if (bips[row][col] != null)// top pixel has a blob in
+                    if (bips[index] != null)// top pixel has a blob in
                     // progress
                     {
-                        bips[row][col].bottom = max(bips[row][col].bottom, row + 1);
+                        bips[index].bottom = max(bips[index].bottom, row + 1);
 
-                        if (bips[row + 1][col] != null && bips[row][col] != bips[row + 1][col])// they
+                        if (bips[below] != null && bips[index] != bips[below])// they
                         // are
                         // both
                         // something
                         {
-                            BlobInProgress old = bips[row + 1][col];
+                            BlobInProgress old = bips[below];
 
                             for (int r = old.top; r <= old.bottom; r++) {
                                 for (int c = old.left; c <= old.right; c++) {
-                                    if (bips[r][c] == old) {
-                                        bips[r][c] = bips[row][col];
+                                    if (bips[r * width + c] == old) {
+                                        bips[r * width + c] = bips[index];
                                     }
                                 }
                             }
 
                             //sets the boundaries of the blob
-                            bips[row][col].left = min(bips[row][col].left, old.left);
-                            bips[row][col].right = max(bips[row][col].right, old.right);
-                            bips[row][col].top = min(bips[row][col].top, old.top);
-                            bips[row][col].bottom = max(bips[row][col].bottom, old.bottom);
+                            bips[index].left = min(bips[index].left, old.left);
+                            bips[index].right = max(bips[index].right, old.right);
+                            bips[index].top = min(bips[index].top, old.top);
+                            bips[index].bottom = max(bips[index].bottom, old.bottom);
                         }
 
-                        bips[row + 1][col] = bips[row][col];
-                    } else if (bips[row + 1][col] != null) {
-                        bips[row + 1][col].top = min(bips[row + 1][col].top, row);
-                        bips[row][col] = bips[row + 1][col];
+                        bips[below] = bips[index];
+                    } else if (bips[below] != null) {
+                        bips[below].top = min(bips[below].top, row);
+                        bips[index] = bips[below];
                     } else {
-                        bips[row][col] = getBip(row, col, row + 1, col, pixels[row][col]);
-                        bips[row + 1][col] = bips[row][col];
+                        bips[index] = getBip(row, col, row + 1, col, pixelColors[colors[index]]);
+                        bips[below] = bips[index];
                     }
 
                 }
             }
         }
-       
+
         //eliminates blbos that are too large or too small
-        for (BlobInProgress[] bipRow : bips) {
-            for (BlobInProgress bip : bipRow) {
-                if (bip != null) {
-                    if (!added.contains(bip.id)) {
-                        added.add(bip.id);
-                        if (bip.width() >= 4 && bip.height() >= 4 && bip.width() < (pixels[0].length >> 1)
-                                && bip.height() < (pixels.length >> 1) && bip.color.getColor() != Color.GREY) {
-                            blobs.add(getBlob(bip));
-                        }
+        for (BlobInProgress bip : bips) {
+            if (bip != null) {
+                if (!added.contains(bip.id)) {
+                    added.add(bip.id);
+                    if (bip.width() >= 4 && bip.height() >= 4 && bip.width() < (width >> 1)
+                            && bip.height() < (height >> 1) && bip.color.getColor() != Color.GREY) {
+                        blobs.add(getBlob(bip));
                     }
                 }
             }
         }
-        
+
         return blobs;
     }
 
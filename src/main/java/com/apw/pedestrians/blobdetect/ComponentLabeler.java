@@ -0,0 +1,209 @@
+package com.apw.pedestrians.blobdetect;
+
+import static com.apw.pedestrians.blobdetect.BlobDetection.MAXIMUM_DIFFERENCE_IN_WIDTH_BETWEEN_TWO_BLOBS_IN_ORDER_TO_JOIN;
+
+/**
+ * Two pass connected component labeler over the simple color plane, using a union-find of int labels.
+ * The first pass gives every horizontal run of two or more pixels of a color a label, then joins labels of the
+ * same color that touch vertically, the same as BlobDetection: only while the components' widths are within
+ * MAXIMUM_DIFFERENCE_IN_WIDTH_BETWEEN_TWO_BLOBS_IN_ORDER_TO_JOIN of each other.
+ * The second pass resolves every pixel to its component and counts them.
+ * Labels are joined by their roots with path compression, so labeling is linear in the pixels
+ * where BlobDetection rewrote the whole bounding box of a blob on every join.
+ * The arrays are kept between frames of the same size, so labeling does not allocate.
+ */
+public class ComponentLabeler {
+    private static final int NONE = -1;
+
+    private int width, height;
+    private int[] labels; // Label of each pixel, or NONE
+    private int[] parent; // Union-find parent of each label, a root is its own parent
+    private int[] top, left, bottom, right, count; // Bounds and pixel count of each root
+    private byte[] color;
+    private int labelCount;
+    private int[] components; // Root of each component found
+    private int componentCount;
+
+    /**
+     * Labels the components of a frame
+     *
+     * @param colors simple color of each pixel, as a Color ordinal
+     * @param width pixels in a row
+     * @return the number of components
+     */
+    public int label(byte[] colors, int width) {
+        resize(width, colors.length / width);
+        labelCount = 0;
+
+        // Label the horizontal runs
+        for (int row = 0; row < height; row++) {
+            int rowStart = row * width;
+            for (int col = 0; col < width; col++) {
+                labels[rowStart + col] = NONE;
+            }
+            for (int col = 0; col < width - 1; col++) {
+                int index = rowStart + col;
+                if (colors[index] == colors[index + 1]) {
+                    if (labels[index] == NONE) {
+                        labels[index] = newLabel(row, col, colors[index]);
+                    }
+                    labels[index + 1] = labels[index];
+                    right[labels[index]] = col + 1;
+                }
+            }
+        }
+
+        // Join runs that touch vertically
+        for (int row = 0; row < height - 1; row++) {
+            int rowStart = row * width;
+            for (int col = 0; col < width; col++) {
+                int upper = labels[rowStart + col];
+                int lower = labels[rowStart + width + col];
+                if (upper != NONE && lower != NONE && colors[rowStart + col] == colors[rowStart + width + col]) {
+                    union(upper, lower);
+                }
+            }
+        }
+
+        // Resolve every pixel to its root, and count the pixels of each component
+        componentCount = 0;
+        for (int idx = 0; idx < labelCount; idx++) {
+            count[idx] = 0;
+        }
+        for (int index = 0; index < width * height; index++) {
+            if (labels[index] != NONE) {
+                int root = find(labels[index]);
+                labels[index] = root;
+                if (count[root]++ == 0) {
+                    components[componentCount++] = root;
+                }
+            }
+        }
+        return componentCount;
+    }
+
+    private void resize(int width, int height) {
+        this.width = width;
+        this.height = height;
+        int pixels = width * height;
+        if (labels == null || labels.length != pixels) {
+            // Every run is at least two pixels
+            int maxLabels = pixels / 2 + 1;
+            labels = new int[pixels];
+            parent = new int[maxLabels];
+            top = new int[maxLabels];
+            left = new int[maxLabels];
+            bottom = new int[maxLabels];
+            right = new int[maxLabels];
+            count = new int[maxLabels];
+            color = new byte[maxLabels];
+            components = new int[maxLabels];
+        }
+    }
+
+    private int newLabel(int row, int col, byte runColor) {
+        int label = labelCount++;
+        parent[label] = label;
+        top[label] = row;
+        bottom[label] = row;
+        left[label] = col;
+        right[label] = col;
+        color[label] = runColor;
+        return label;
+    }
+
+    /**
+     * @return the root of a label, pointing every label on the way at it
+     */
+    private int find(int label) {
+        int root = label;
+        while (parent[root] != root) {
+            root = parent[root];
+        }
+        while (parent[label] != root) {
+            int next = parent[label];
+            parent[label] = root;
+            label = next;
+        }
+        return root;
+    }
+
+    /**
+     * Joins the components of two labels if their widths are close enough, keeping the bounds of both
+     */
+    private void union(int first, int second) {
+        int a = find(first);
+        int b = find(second);
+        if (a == b || Math.abs(componentWidth(a) - componentWidth(b))
+                > MAXIMUM_DIFFERENCE_IN_WIDTH_BETWEEN_TWO_BLOBS_IN_ORDER_TO_JOIN) {
+            return;
+        }
+        // The older label stays the root, as the blob above keeps its place in BlobDetection
+        if (b < a) {
+            int swap = a;
+            a = b;
+            b = swap;
+        }
+        parent[b] = a;
+        top[a] = Math.min(top[a], top[b]);
+        left[a] = Math.min(left[a], left[b]);
+        bottom[a] = Math.max(bottom[a], bottom[b]);
+        right[a] = Math.max(right[a], right[b]);
+    }
+
+    private int componentWidth(int root) {
+        return right[root] - left[root] + 1;
+    }
+
+    /**
+     * @return the root label of the nth component found
+     */
+    public int getComponent(int n) {
+        return components[n];
+    }
+
+    /**
+     * @return the component a pixel belongs to, or -1 if it is in none
+     */
+    public int getLabel(int row, int col) {
+        return labels[row * width + col];
+    }
+
+    public int getTop(int component) {
+        return top[component];
+    }
+
+    public int getLeft(int component) {
+        return left[component];
+    }
+
+    public int getBottom(int component) {
+        return bottom[component];
+    }
+
+    public int getRight(int component) {
+        return right[component];
+    }
+
+    public int getWidth(int component) {
+        return right[component] - left[component] + 1;
+    }
+
+    public int getHeight(int component) {
+        return bottom[component] - top[component] + 1;
+    }
+
+    /**
+     * @return the number of pixels in a component
+     */
+    public int getPixelCount(int component) {
+        return count[component];
+    }
+
+    /**
+     * @return the simple color of a component, as a Color ordinal
+     */
+    public byte getColor(int component) {
+        return color[component];
+    }
+}
@@ -25,26 +25,28 @@ public class PrimitiveBlobDetection extends BlobDetection {
     private Deque<Blob> unusedBlobs = new ArrayDeque<>();
 
     private List<Blob> blobList = new LinkedList<>();
+    private int[] colors;
 
     BottomCheckKernel bottomCheckKernel = new BottomCheckKernel();
     RightCheckKernel rightCheckKernel = new RightCheckKernel();
 
     @Override
-    public List<Blob> getBlobs(Pixel[][] pixels) {
-        if (pixels.length == 0) {
+    public List<Blob> getBlobs(byte[] simple, int width) {
+        if (simple.length == 0) {
             return null;
         }
 
         unusedBlobs.addAll(blobList);
         blobList.clear();
 
-        final int width = pixels[0].length;
-        final int height = pixels.length;
-
-        int[] colors = new int[width * height];
+        final int height = simple.length / width;
 
+        // The kernels read int colors
+        if (colors == null || colors.length != simple.length) {
+            colors = new int[simple.length];
+        }
         for (int i = 0; i < colors.length; i++) {
-            colors[i] = pixels[i / width][i % width].getColor().ordinal();
+            colors[i] = simple[i];
         }
 
         int blobSize = width * height * BLOB_NUM_INT_FIELDS;
@@ -81,14 +83,14 @@ public class PrimitiveBlobDetection extends BlobDetection {
         return blobList;
     }
 
-    private static final Pixel[] colors = Arrays.stream(Color.values()).map(Pixel::new).toArray(Pixel[]::new);
+    private static final Pixel[] pixelColors = Arrays.stream(Color.values()).map(Pixel::new).toArray(Pixel[]::new);
 
     private Blob getBlob(int i) {
         int x = blobs[i + BLOB_LEFT];
         int y = blobs[i + BLOB_TOP];
         int width = blobs[i + BLOB_RIGHT] - blobs[i + BLOB_LEFT] + 1;
         int height = blobs[i + BLOB_BOTTOM] - blobs[i + BLOB_TOP] + 1;
-        Pixel color = colors[
+        Pixel color = pixelColors[
                              blobs[i + BLOB_COLOR]];
 
 
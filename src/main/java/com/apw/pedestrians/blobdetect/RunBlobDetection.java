@@ -0,0 +1,144 @@
+package com.apw.pedestrians.blobdetect;
+
+import com.apw.pedestrians.image.Color;
+import com.apw.pedestrians.image.Pixel;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Finds the same blobs as BlobDetection from the ScanlineRuns of the image instead of its pixels.
+ * Runs of two or more pixels are joined with the runs of the same color they overlap on the next row,
+ * through a union-find of run indices, while the blobs' widths are within
+ * MAXIMUM_DIFFERENCE_IN_WIDTH_BETWEEN_TWO_BLOBS_IN_ORDER_TO_JOIN of each other.
+ * The overlapping runs of two rows are found by walking both rows at once, so the work follows the number of runs,
+ * which is far smaller than the number of pixels on the road and sky.
+ */
+public class RunBlobDetection extends BlobDetection {
+    private static final Pixel[] pixelColors = Arrays.stream(Color.values()).map(Pixel::new).toArray(Pixel[]::new);
+
+    private final ScanlineRuns runs = new ScanlineRuns();
+    private int[] parent = new int[0]; // Union-find parent of each run, a root is its own parent
+    private int[] top = new int[0], left = new int[0], bottom = new int[0], right = new int[0]; // Bounds of each root
+    private Deque<Blob> unusedBlobs = new ArrayDeque<>();
+    private List<Blob> blobList = new LinkedList<>();
+
+    @Override
+    public List<Blob> getBlobs(byte[] colors, int width) {
+        unusedBlobs.addAll(blobList);
+        blobList.clear();
+
+        int runCount = runs.encode(colors, width);
+        int height = runs.getHeight();
+        if (parent.length < runCount) {
+            parent = new int[runCount];
+            top = new int[parent.length];
+            left = new int[parent.length];
+            bottom = new int[parent.length];
+            right = new int[parent.length];
+        }
+        for (int row = 0; row < height; row++) {
+            for (int run = runs.getRowStart(row); run < runs.getRowEnd(row); run++) {
+                parent[run] = run;
+                top[run] = row;
+                bottom[run] = row;
+                left[run] = runs.getStart(run);
+                right[run] = runs.getEnd(run);
+            }
+        }
+
+        // Join the runs that overlap on consecutive rows
+        for (int row = 0; row < height - 1; row++) {
+            int upper = runs.getRowStart(row);
+            int lower = runs.getRowStart(row + 1);
+            int upperEnd = runs.getRowEnd(row);
+            int lowerEnd = runs.getRowEnd(row + 1);
+            while (upper < upperEnd && lower < lowerEnd) {
+                if (runs.getColor(upper) == runs.getColor(lower)
+                        && runs.getLength(upper) >= 2 && runs.getLength(lower) >= 2) {
+                    union(upper, lower);
+                }
+                // Runs are in column order, so move past whichever ends first
+                int upperLast = runs.getEnd(upper);
+                int lowerLast = runs.getEnd(lower);
+                if (upperLast <= lowerLast) {
+                    upper++;
+                }
+                if (lowerLast <= upperLast) {
+                    lower++;
+                }
+            }
+        }
+
+        //eliminates blobs that are too large or too small
+        for (int run = 0; run < runCount; run++) {
+            if (runs.getLength(run) >= 2 && parent[run] == run) {
+                int blobWidth = right[run] - left[run] + 1;
+                int blobHeight = bottom[run] - top[run] + 1;
+                if (blobWidth >= 4 && blobHeight >= 4 && blobWidth < (width >> 1) && blobHeight < (height >> 1)
+                        && runs.getColor(run) != Color.GREY.ordinal()) {
+                    blobList.add(getBlob(run));
+                }
+            }
+        }
+        return blobList;
+    }
+
+    /**
+     * @return the root of a run, pointing every run on the way at it
+     */
+    private int find(int run) {
+        int root = run;
+        while (parent[root] != root) {
+            root = parent[root];
+        }
+        while (parent[run] != root) {
+            int next = parent[run];
+            parent[run] = root;
+            run = next;
+        }
+        return root;
+    }
+
+    /**
+     * Joins the blobs of two runs if their widths are close enough, keeping the bounds of both
+     */
+    private void union(int first, int second) {
+        int a = find(first);
+        int b = find(second);
+        if (a == b || Math.abs((right[a] - left[a]) - (right[b] - left[b]))
+                > MAXIMUM_DIFFERENCE_IN_WIDTH_BETWEEN_TWO_BLOBS_IN_ORDER_TO_JOIN) {
+            return;
+        }
+        // The earlier run stays the root, as the blob above keeps its place in BlobDetection
+        if (b < a) {
+            int swap = a;
+            a = b;
+            b = swap;
+        }
+        parent[b] = a;
+        top[a] = Math.min(top[a], top[b]);
+        left[a] = Math.min(left[a], left[b]);
+        bottom[a] = Math.max(bottom[a], bottom[b]);
+        right[a] = Math.max(right[a], right[b]);
+    }
+
+    private Blob getBlob(int root) {
+        int x = left[root];
+        int y = top[root];
+        int width = right[root] - left[root] + 1;
+        int height = bottom[root] - top[root] + 1;
+        Pixel color = pixelColors[runs.getColor(root)];
+
+        if (unusedBlobs.isEmpty()) {
+            return new Blob(width, height, x, y, color);
+        } else {
+            Blob blob = unusedBlobs.pop();
+            blob.set(width, height, x, y, color);
+            return blob;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.apw.pedestrians.blobdetect;
+
+import java.util.Arrays;
+
+/**
+ * Run-length encoding of the simple color plane, as the runs of each row: where a run starts, how long it is
+ * and its color. Runs are stored row by row in primitive arrays, so the runs of a row are found from rowStart,
+ * and the arrays only grow when a frame has more runs than any before it.
+ */
+public class ScanlineRuns {
+    private int width, height;
+    private int[] rowStart = new int[1]; // First run of each row, and the run count after the last row
+    private int[] start = new int[0];
+    private int[] length = new int[0];
+    private byte[] color = new byte[0];
+    private int count;
+
+    /**
+     * Encodes the runs of every row of a frame
+     *
+     * @param colors simple color of each pixel, as a Color ordinal
+     * @param width pixels in a row
+     * @return the number of runs
+     */
+    public int encode(byte[] colors, int width) {
+        this.width = width;
+        height = colors.length / width;
+        if (rowStart.length != height + 1) {
+            rowStart = new int[height + 1];
+        }
+        count = 0;
+        for (int row = 0; row < height; row++) {
+            rowStart[row] = count;
+            int rowIndex = row * width;
+            int runStart = 0;
+            for (int col = 1; col <= width; col++) {
+                if (col == width || colors[rowIndex + col] != colors[rowIndex + col - 1]) {
+                    add(runStart, col - runStart, colors[rowIndex + runStart]);
+                    runStart = col;
+                }
+            }
+        }
+        rowStart[height] = count;
+        return count;
+    }
+
+    private void add(int runStart, int runLength, byte runColor) {
+        if (count == start.length) {
+            int capacity = Math.max(2 * count, width * 4);
+            start = Arrays.copyOf(start, capacity);
+            length = Arrays.copyOf(length, capacity);
+            color = Arrays.copyOf(color, capacity);
+        }
+        start[count] = runStart;
+        length[count] = runLength;
+        color[count] = runColor;
+        count++;
+    }
+
+    /**
+     * @return the first run of a row
+     */
+    public int getRowStart(int row) {
+        return rowStart[row];
+    }
+
+    /**
+     * @return the run after the last run of a row
+     */
+    public int getRowEnd(int row) {
+        return rowStart[row + 1];
+    }
+
+    /**
+     * @return the first column of a run
+     */
+    public int getStart(int run) {
+        return start[run];
+    }
+
+    /**
+     * @return the last column of a run
+     */
+    public int getEnd(int run) {
+        return start[run] + length[run] - 1;
+    }
+
+    public int getLength(int run) {
+        return length[run];
+    }
+
+    /**
+     * @return the simple color of a run, as a Color ordinal
+     */
+    public byte getColor(int run) {
+        return color[run];
+    }
+
+    public int getRunCount() {
+        return count;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+}
@@ -0,0 +1,179 @@
+package com.apw.pedestrians.blobtrack;
+
+import java.util.Arrays;
+
+/**
+ * Finds the assignment of rows to columns with the least total cost, using only the candidate pairs that were
+ * added, by an auction: each unassigned row bids for its best column by raising the column's price by how much
+ * better it is than the row's second best, taking it from the row that held it.
+ * Every row can also go unmatched for noMatchCost, a column only that row bids for, so a row is left unmatched
+ * instead of taking a column another row needs more, and the auction always ends.
+ * Bids raise prices by at least epsilon, so the auction ends with a total cost within MAX_TOTAL_ERROR of the best.
+ * Costs are distances in pixels, so a pixel of error is allowed, which keeps the bids rows trade over nearly tied
+ * columns to about the cost range times the row count per column.
+ * Prices all start at zero, as a column nobody bid for has to be the cheapest for the assignment to be the best,
+ * so epsilon is not scaled down from a larger one, which would leave prices on columns that end up unassigned.
+ * If the auction still takes more than MAX_BIDS_PER_ROW bids per row, the closest pairs are matched greedily instead.
+ * Candidates are kept in primitive arrays by row, which are reused between frames.
+ */
+public class AuctionAssignment {
+    private static final double MAX_TOTAL_ERROR = 1;
+    private static final int MAX_BIDS_PER_ROW = 256;
+    private static final int UNASSIGNED = -1;
+    private static final int NO_MATCH = -2;
+
+    private final float noMatchCost;
+    private int rows, columns;
+    private int[] rowStart = new int[1]; // First candidate of each row, and the candidate count after the last row
+    private int[] candidateRow = new int[16];
+    private int[] candidateColumn = new int[16];
+    private float[] candidateCost = new float[16];
+    private int candidates;
+    private double[] price = new double[0];
+    private int[] columnRow = new int[0]; // Row holding each column, or UNASSIGNED
+    private int[] rowColumn = new int[0]; // Column of each row, UNASSIGNED or NO_MATCH
+    private int[] bidders = new int[0]; // Rows still to bid
+    private long[] byCost = new long[0]; // Cost bits and index of each candidate, for the greedy fallback
+
+    /**
+     * @param noMatchCost cost of leaving a row unmatched, pairs cheaper than this are worth matching
+     */
+    public AuctionAssignment(float noMatchCost) {
+        this.noMatchCost = noMatchCost;
+    }
+
+    /**
+     * Forgets every candidate, to start an assignment
+     */
+    public void clear(int rows, int columns) {
+        this.rows = rows;
+        this.columns = columns;
+        if (rowStart.length < rows + 1) {
+            rowStart = new int[rows + 1];
+            rowColumn = new int[rows];
+            bidders = new int[rows];
+        }
+        if (price.length < columns) {
+            price = new double[columns];
+            columnRow = new int[columns];
+        }
+        Arrays.fill(rowStart, 0, rows + 1, 0);
+        candidates = 0;
+    }
+
+    /**
+     * Adds a pair that can be matched, rows must be added in order
+     */
+    public void add(int row, int column, float cost) {
+        if (candidates == candidateColumn.length) {
+            candidateRow = Arrays.copyOf(candidateRow, candidates * 2);
+            candidateColumn = Arrays.copyOf(candidateColumn, candidates * 2);
+            candidateCost = Arrays.copyOf(candidateCost, candidates * 2);
+        }
+        candidateRow[candidates] = row;
+        candidateColumn[candidates] = column;
+        candidateCost[candidates] = cost;
+        candidates++;
+        rowStart[row + 1] = candidates;
+    }
+
+    /**
+     * Assigns the rows, read with getColumn
+     */
+    public void solve() {
+        // Rows without candidates end where the row before them does
+        for (int row = 0; row < rows; row++) {
+            rowStart[row + 1] = Math.max(rowStart[row + 1], rowStart[row]);
+        }
+        Arrays.fill(price, 0, columns, 0);
+        Arrays.fill(columnRow, 0, columns, UNASSIGNED);
+        double epsilon = MAX_TOTAL_ERROR / (rows + 1);
+        int bidderCount = 0;
+        for (int row = 0; row < rows; row++) {
+            rowColumn[row] = UNASSIGNED;
+            bidders[bidderCount++] = row;
+        }
+        int bidsLeft = MAX_BIDS_PER_ROW * rows;
+        while (bidderCount > 0) {
+            if (bidsLeft-- == 0) {
+                solveGreedy();
+                return;
+            }
+            int row = bidders[--bidderCount];
+            int outbid = bid(row, epsilon);
+            if (outbid != UNASSIGNED) {
+                rowColumn[outbid] = UNASSIGNED;
+                bidders[bidderCount++] = outbid;
+            }
+        }
+    }
+
+    /**
+     * Matches the closest pairs first, for when the auction takes too many bids
+     */
+    private void solveGreedy() {
+        if (byCost.length < candidates) {
+            byCost = new long[candidateColumn.length];
+        }
+        int count = 0;
+        for (int row = 0; row < rows; row++) {
+            rowColumn[row] = NO_MATCH;
+            for (int k = rowStart[row]; k < rowStart[row + 1]; k++) {
+                if (candidateCost[k] < noMatchCost) {
+                    // Bits of non-negative floats sort in the same order as the floats
+                    byCost[count++] = (long) Float.floatToIntBits(Math.max(candidateCost[k], 0f)) << 32 | k;
+                }
+            }
+        }
+        Arrays.sort(byCost, 0, count);
+        Arrays.fill(columnRow, 0, columns, UNASSIGNED);
+        for (int i = 0; i < count; i++) {
+            int k = (int) byCost[i];
+            int row = candidateRow[k];
+            int column = candidateColumn[k];
+            if (rowColumn[row] == NO_MATCH && columnRow[column] == UNASSIGNED) {
+                rowColumn[row] = column;
+                columnRow[column] = row;
+            }
+        }
+    }
+
+    /**
+     * Takes the best column for a row, or leaves it unmatched if that is best
+     *
+     * @return the row that held the column, or UNASSIGNED
+     */
+    private int bid(int row, double epsilon) {
+        // Values are negative costs less prices, going unmatched has no price
+        int best = NO_MATCH;
+        double bestValue = -noMatchCost;
+        double secondValue = Double.NEGATIVE_INFINITY;
+        for (int k = rowStart[row]; k < rowStart[row + 1]; k++) {
+            double value = -candidateCost[k] - price[candidateColumn[k]];
+            if (value > bestValue) {
+                secondValue = bestValue;
+                bestValue = value;
+                best = candidateColumn[k];
+            } else if (value > secondValue) {
+                secondValue = value;
+            }
+        }
+        rowColumn[row] = best;
+        if (best == NO_MATCH) {
+            return UNASSIGNED;
+        }
+        // Going unmatched is always a choice, so there is a second best
+        price[best] += bestValue - secondValue + epsilon;
+        int outbid = columnRow[best];
+        columnRow[best] = row;
+        return outbid;
+    }
+
+    /**
+     * @return the column assigned to a row, or -1 if it is unmatched
+     */
+    public int getColumn(int row) {
+        int column = rowColumn[row];
+        return column < 0 ? -1 : column;
+    }
+}
@@ -0,0 +1,125 @@
+package com.apw.pedestrians.blobtrack;
+
+import java.util.Arrays;
+
+/**
+ * Uniform grid of blob positions, so matching a blob only looks at the blobs in the cells around it
+ * instead of every blob. Blobs are added by the index of the blob in the caller's list, with the position
+ * they are matched on, and cells are as big as the farthest two blobs can be apart and still match,
+ * so every blob that can match is in one of the nine cells around a position.
+ * Cells are hashed into buckets sorted by a counting sort, so the grid covers any position and is rebuilt
+ * each frame without allocating once it has grown to the number of blobs.
+ */
+public class BlobGrid {
+    private final float cellWidth;
+    private final float cellHeight;
+    private int[] cellX = new int[16]; // Cell of each blob
+    private int[] cellY = new int[16];
+    private int[] bucketOf = new int[16];
+    private int count;
+    private int[] bucketStart = new int[1]; // First sorted blob of each bucket, and count after the last
+    private int[] sorted = new int[16]; // Blob indices by bucket, in the order they were added within a bucket
+    private int mask;
+    private int[] neighbours = new int[16];
+
+    /**
+     * @param cellWidth Farthest apart in x two matching blobs can be
+     * @param cellHeight Farthest apart in y two matching blobs can be
+     */
+    public BlobGrid(float cellWidth, float cellHeight) {
+        this.cellWidth = cellWidth;
+        this.cellHeight = cellHeight;
+    }
+
+    /**
+     * Forgets every blob, to start a frame
+     */
+    public void clear() {
+        count = 0;
+    }
+
+    /**
+     * Adds the next blob, whose index is the number of blobs added before it
+     */
+    public void add(float x, float y) {
+        if (count == cellX.length) {
+            cellX = Arrays.copyOf(cellX, count * 2);
+            cellY = Arrays.copyOf(cellY, count * 2);
+            bucketOf = Arrays.copyOf(bucketOf, count * 2);
+            sorted = Arrays.copyOf(sorted, count * 2);
+            neighbours = Arrays.copyOf(neighbours, count * 2);
+        }
+        cellX[count] = cell(x, cellWidth);
+        cellY[count] = cell(y, cellHeight);
+        count++;
+    }
+
+    /**
+     * Sorts the blobs added into their buckets, must be called before neighbours
+     */
+    public void build() {
+        int buckets = Integer.highestOneBit(Math.max(16, count * 2) - 1) << 1;
+        mask = buckets - 1;
+        if (bucketStart.length != buckets + 1) {
+            bucketStart = new int[buckets + 1];
+        } else {
+            Arrays.fill(bucketStart, 0);
+        }
+        for (int i = 0; i < count; i++) {
+            bucketOf[i] = bucket(cellX[i], cellY[i]);
+            bucketStart[bucketOf[i] + 1]++;
+        }
+        for (int b = 0; b < buckets; b++) {
+            bucketStart[b + 1] += bucketStart[b];
+        }
+        for (int i = 0; i < count; i++) {
+            sorted[bucketStart[bucketOf[i]]++] = i;
+        }
+        // Filling moved each start to the next bucket's start, move them back
+        for (int b = buckets; b > 0; b--) {
+            bucketStart[b] = bucketStart[b - 1];
+        }
+        bucketStart[0] = 0;
+    }
+
+    /**
+     * Finds the blobs in the cell of a position and the cells around it
+     *
+     * @return the number of blobs found, read with getNeighbour
+     */
+    public int neighbours(float x, float y) {
+        int centerX = cell(x, cellWidth);
+        int centerY = cell(y, cellHeight);
+        int found = 0;
+        for (int dy = -1; dy <= 1; dy++) {
+            for (int dx = -1; dx <= 1; dx++) {
+                int b = bucket(centerX + dx, centerY + dy);
+                for (int k = bucketStart[b]; k < bucketStart[b + 1]; k++) {
+                    int i = sorted[k];
+                    // Other cells can share the bucket
+                    if (cellX[i] == centerX + dx && cellY[i] == centerY + dy) {
+                        neighbours[found++] = i;
+                    }
+                }
+            }
+        }
+        // In the order they were added, so matching goes through them in the same order as the whole list
+        Arrays.sort(neighbours, 0, found);
+        return found;
+    }
+
+    /**
+     * @return the index of the nth blob found by neighbours
+     */
+    public int getNeighbour(int n) {
+        return neighbours[n];
+    }
+
+    private static int cell(float position, float cellSize) {
+        return (int) Math.floor(position / cellSize);
+    }
+
+    private int bucket(int x, int y) {
+        return (x * 73856093 ^ y * 19349663) & mask;
+    }
+}
@@ -27,8 +27,21 @@ public class MovingBlobDetection {
     //list of all moving blobs that have been recently tracked
     private List<MovingBlob> movingBlobs;
     private List<MovingBlob> filteredUnifiedBlobs;
+    //tracked blobs by predicted position, and new unified blobs by center, so matching only compares nearby blobs
+    private final BlobGrid movingBlobGrid = new BlobGrid(distanceLimitX, distanceLimitY);
+    private final BlobGrid unifiedBlobGrid = new BlobGrid(distanceUnifyMatchLimit, distanceUnifyMatchLimit);
+    //matches blobs by the least total distance instead of closest pair first, so blobs that cross keep their movingblobs
+    private boolean optimalMatching;
+    //a blob is left unmatched for more than any pair within the distance limits costs
+    private final AuctionAssignment assignment =
+            new AuctionAssignment((float) Math.sqrt(distanceLimitX * distanceLimitX + distanceLimitY * distanceLimitY) + 1);
 
     public MovingBlobDetection() {
+        this(Constant.OPTIMAL_BLOB_MATCHING);
+    }
+
+    public MovingBlobDetection(boolean optimalMatching) {
+        this.optimalMatching = optimalMatching;
         movingBlobs = new LinkedList<>();
         filteredUnifiedBlobs = new LinkedList<>();
     }
@@ -208,16 +221,22 @@ public class MovingBlobDetection {
     }
 
     public void updateFilteredUnifiedBlobs(List<MovingBlob> blobList) {
-        MovingBlob[][] pairs = new MovingBlob[blobList.size() * filteredUnifiedBlobs.size()][2];
-        int j = 0;
-        for (int i1 = 0; i1 < filteredUnifiedBlobs.size(); i1++) {
-            filteredUnifiedBlobs.get(i1).updatePredictedPosition();
-            for (int i2 = 0; i2 < blobList.size(); i2++) {
-                pairs[j][0] = filteredUnifiedBlobs.get(i1);
-                pairs[j][1] = blobList.get(i2);
-                j++;
+        //pairs farther apart than distanceUnifyMatchLimit never match, so only nearby blobs are paired
+        MovingBlob[] newBlobArray = blobList.toArray(new MovingBlob[0]);
+        unifiedBlobGrid.clear();
+        for (MovingBlob blob : newBlobArray) {
+            unifiedBlobGrid.add(blob.x + blob.width / 2, blob.y + blob.height / 2);
+        }
+        unifiedBlobGrid.build();
+        List<MovingBlob[]> pairList = new ArrayList<>();
+        for (MovingBlob unifiedBlob : filteredUnifiedBlobs) {
+            unifiedBlob.updatePredictedPosition();
+            int found = unifiedBlobGrid.neighbours(unifiedBlob.predictedX, unifiedBlob.predictedY);
+            for (int n = 0; n < found; n++) {
+                pairList.add(new MovingBlob[]{unifiedBlob, newBlobArray[unifiedBlobGrid.getNeighbour(n)]});
             }
         }
+        MovingBlob[][] pairs = pairList.toArray(new MovingBlob[0][]);
         Arrays.sort(pairs, (o1, o2) -> {
             float distanceX1 = Math.abs(o1[0].predictedX - (o1[1].x + o1[1].width / 2));
             float distanceY1 = Math.abs(o1[0].predictedY - (o1[1].y + o1[1].height / 2));
@@ -286,10 +305,23 @@ public class MovingBlobDetection {
         HashSet<Blob> blobSet = new HashSet<>(blobList);
         //queue with shortest distance pairs of movingblobs and blobs in front
         PriorityQueue<BlobPair> queue = new PriorityQueue<>();
-        for (Blob blob : blobList) {
-            for (MovingBlob movingBlob : this.movingBlobs) {
+        //only the movingblobs predicted to be in the cells around a blob can be within the distance limits
+        MovingBlob[] tracked = this.movingBlobs.toArray(new MovingBlob[0]);
+        movingBlobGrid.clear();
+        for (MovingBlob movingBlob : tracked) {
+            movingBlob.updatePredictedPosition();
+            movingBlobGrid.add(movingBlob.predictedX, movingBlob.predictedY);
+        }
+        movingBlobGrid.build();
+        Blob[] blobs = blobList.toArray(new Blob[0]);
+        assignment.clear(blobs.length, tracked.length);
+        for (int row = 0; row < blobs.length; row++) {
+            Blob blob = blobs[row];
+            int found = movingBlobGrid.neighbours(blob.x + blob.width / 2, blob.y + blob.height / 2);
+            for (int n = 0; n < found; n++) {
+                int column = movingBlobGrid.getNeighbour(n);
+                MovingBlob movingBlob = tracked[column];
                 //creates pairs in queue of blobs & moving blobs with same color within 100 pixels
-                movingBlob.updatePredictedPosition();
                 if (blob.color.getColor() == movingBlob.color.getColor()) {
                     float distanceX = Math.abs(movingBlob.predictedX - (blob.x + blob.width / 2));
                     float distanceY = Math.abs(movingBlob.predictedY - (blob.y + blob.height / 2));
@@ -298,11 +330,26 @@ public class MovingBlobDetection {
                     float heightChange = Math.abs(movingBlob.height - blob.height);
                     if (distanceX <= distanceLimitX && distanceY <= distanceLimitY &&
                             widthChange <= widthChangeLimit && heightChange <= heightChangeLimit) {
-                        queue.add(new BlobPair(distance, blob, movingBlob));
+                        if (optimalMatching) {
+                            assignment.add(row, column, distance);
+                        } else {
+                            queue.add(new BlobPair(distance, blob, movingBlob));
+                        }
                     }
                 }
             }
         }
+        if (optimalMatching) {
+            assignment.solve();
+            for (int row = 0; row < blobs.length; row++) {
+                int column = assignment.getColumn(row);
+                if (column != -1) {
+                    matchBlob(tracked[column], blobs[row]);
+                    movingBlobSet.remove(tracked[column]);
+                    blobSet.remove(blobs[row]);
+                }
+            }
+        }
         //matches closest pairs until it runs out of movingBlobs, blobs, or pairs
         while (!movingBlobSet.isEmpty() && !blobSet.isEmpty() && !queue.isEmpty()) {
             //finds shortest pair in queue
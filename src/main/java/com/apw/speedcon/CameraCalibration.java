@@ -142,6 +142,17 @@ public class CameraCalibration {
 	}
 
 
+	public double getCameraFocalLength() {
+		return cameraFocalLength;
+	}
+
+	//Focal length in pixels of an image imageWidth pixels wide, taken on a sensor sensorWidth mm wide
+	//0 if the camera has not been calibrated
+	public double getFocalLengthPixels(int imageWidth, double sensorWidth) {
+		return cameraFocalLength * imageWidth / sensorWidth;
+	}
+
+
 	//Calculates the distance to a blob if the real world size is known
 	public double distanceToObj(double knownWidth, double objPixelWidth, CarControl control) {
 		if (control instanceof CamControl) {
@@ -3,6 +3,7 @@ package com.apw.speedcon;
 import com.apw.carcontrol.CamControl;
 import com.apw.carcontrol.CarControl;
 import com.apw.carcontrol.Module;
+import com.apw.imagemanagement.FrameContext;
 import com.apw.pedestrians.Constant;
 import com.apw.pedestrians.PedestrianDetector;
 import com.apw.pedestrians.blobtrack.MovingBlob;
@@ -79,15 +80,29 @@ public class SpeedControlModule implements Module {
 	 */
 	@Override
 	public void update(CarControl control) {
+		update(control, control.getProcessedImage());
+	}
+
+	/**
+	 * Same as update(CarControl), finding blobs in the simple color image of a decoded frame
+	 * @param control this is our car controller
+	 * @param frame the frame with the simple color image
+	 */
+	@Override
+	public void update(CarControl control, FrameContext frame) {
+		update(control, frame.getSimpleColor());
+	}
+
+	private void update(CarControl control, byte[] simpleImage) {
 		if (control instanceof CamControl) {
-			List<MovingBlob> blobs = this.pedDetect.getAllBlobs(control.getProcessedImage(), control.getImageWidth());
-			//List<MovingBlob> peds = this.pedDetect.detect(control.getProcessedImage(), control.getImageWidth(), blobs);
+			List<MovingBlob> blobs = this.pedDetect.getAllBlobs(simpleImage, control.getImageWidth());
+			//List<MovingBlob> peds = this.pedDetect.detect(simpleImage, control.getImageWidth(), blobs);
 			this.currentBlobs = blobs;
 			//this.currentPeds = peds;
 		}
 		else {
-			List<MovingBlob> blobs = this.pedDetect.getAllBlobs(control.getProcessedImage(), Constants.SCREEN_WIDTH);
-			//List<MovingBlob> peds = this.pedDetect.detect(control.getProcessedImage(), Constants.SCREEN_WIDTH, blobs);
+			List<MovingBlob> blobs = this.pedDetect.getAllBlobs(simpleImage, Constants.SCREEN_WIDTH);
+			//List<MovingBlob> peds = this.pedDetect.detect(simpleImage, Constants.SCREEN_WIDTH, blobs);
 			this.currentBlobs = blobs;
 			//this.currentPeds = peds;
 		}
@@ -1,5 +1,6 @@
 package com.apw.steering;
 
+import com.apw.apw3.DriverCons;
 import java.awt.Color;
 
 public class SteeringConstants {
@@ -12,6 +13,7 @@ public class SteeringConstants {
     static final Color MIDPOINT_COLOR = Color.blue;
     static final Color TARGET_POINT_COLOR = Color.red;
     static final Color STEER_POINT_COLOR = Color.cyan;
+    static final boolean USE_LATENCY_COMPENSATION = true; // Steer from where the car will be when the servo moves
 
     // SteeringBase Constants
     public static final boolean USE_PID = false; // Weather or not to use PID
@@ -41,4 +43,25 @@ public class SteeringConstants {
     public static final int DEFAULT_ROAD_WIDTH = 400; // The road width if slope is unknown
     public static final int MINIMUM_RELIABLE_OFFSET = 20; // Minimum required pixel difference to be considered reliable.
     public static final boolean USE_NO_LANE_DETECTION = false;
+    public static final boolean USE_LANE_TRACKING = true; // Search near last frame's lines before scanning the row
+    public static final int TRACKING_WINDOW = 12; // Pixels either side of last frame's line that are searched
+    public static final int TRACKING_ROWS = 8; // Rows either side a lost row looks for last frame's line
+    public static final int TRACKING_REACQUIRE = 5; // Frames between full searches of rows where a line was lost
+    public static final boolean USE_LANE_MODEL = false; // Steer on a curve fitted to the lines instead of the points
+    public static final int MIN_MODEL_POINTS = 20; // Fewest points of a line to fit a curve to
+    public static final boolean USE_BIT_MASK = true; // Search the packed black and white mask instead of the raster
+
+    // SteeringMk5 Constants (distances in park meters, like DriverCons.D_CameraHi)
+    public static final double IPM_FOCAL_LENGTH = 300; // Focal length in pixels of TrakSim's camera, and of the car's if not calibrated
+    public static final double IPM_HORIZON = 0.5; // Height of the horizon, as a fraction of the image from the top
+    public static final double IPM_CELL_SIZE = 0.1; // Size of the ground each cell of the top-down grid covers
+    public static final double IPM_HALF_WIDTH = 5.0; // Distance either side of the car the top-down grid covers
+    public static final double IPM_MAX_DISTANCE = 10.0; // Furthest ahead the top-down grid reaches
+    public static final double LOOKAHEAD_DISTANCE = 4.0; // Distance ahead of the steer point
+    public static final double DEFAULT_LANE_WIDTH = 7.4; // Lane width until both lines have been seen, TrakSim's track
+    public static final double LANE_WIDTH_GAIN = 0.05; // How quickly the lane width follows the lines seen
+    public static final double LANE_TRACKING_INDEX = 0.5; // How far the lane moves a frame, relative to its noise
+    public static final double MAX_WHEEL_ANGLE = DriverCons.D_LeftSteer; // Full lock, in degrees
+    // Wheel base that turns TrakSim's car on its turn radius at full lock
+    public static final double WHEEL_BASE = DriverCons.D_TurnRadius * Math.tan(Math.toRadians(MAX_WHEEL_ANGLE));
 }
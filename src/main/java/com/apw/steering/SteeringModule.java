@@ -4,15 +4,22 @@ import com.apw.apw3.DriverCons;
 import com.apw.carcontrol.CamControl;
 import com.apw.carcontrol.CarControl;
 import com.apw.carcontrol.CarControlBase;
+import com.apw.carcontrol.LatencyHistogram;
+import com.apw.carcontrol.LatencyMonitor;
 import com.apw.carcontrol.Module;
+import com.apw.imagemanagement.BitMask;
+import com.apw.imagemanagement.FrameContext;
 
 import com.apw.steering.steeringclasses.Point;
+import com.apw.steering.steeringclasses.PointOverlay;
 import com.apw.steering.steeringversions.SteeringBase;
 import com.apw.steering.steeringversions.SteeringMk1;
 import com.apw.steering.steeringversions.SteeringMk2;
 import com.apw.steering.steeringversions.SteeringMk4;
+import com.apw.steering.steeringversions.SteeringMk5;
 import java.awt.*;
 import java.awt.event.KeyEvent;
+import java.util.List;
 import static com.apw.steering.SteeringConstants.DRAW_STEERING_LINES;
 import static com.apw.steering.SteeringConstants.LEFT_LANE_COLOR;
 import static com.apw.steering.SteeringConstants.MIDPOINT_COLOR;
@@ -20,6 +27,7 @@ import static com.apw.steering.SteeringConstants.RIGHT_LANE_COLOR;
 import static com.apw.steering.SteeringConstants.STEERING_VERSION;
 import static com.apw.steering.SteeringConstants.STEER_POINT_COLOR;
 import static com.apw.steering.SteeringConstants.TARGET_POINT_COLOR;
+import static com.apw.steering.SteeringConstants.USE_LATENCY_COMPENSATION;
 
 public class SteeringModule implements Module {
 
@@ -50,6 +58,9 @@ public class SteeringModule implements Module {
                 case 4:
                     steering = new SteeringMk4(control);
                     break;
+                case 5:
+                    steering = new SteeringMk5(control);
+                    break;
             }
         } else {
             switch (STEERING_VERSION) {
@@ -65,6 +76,9 @@ public class SteeringModule implements Module {
                 case 4:
                     steering = new SteeringMk4(640, 480, 912);
                     break;
+                case 5:
+                    steering = new SteeringMk5(640, 480, 912);
+                    break;
 
             }
         }
@@ -73,14 +87,59 @@ public class SteeringModule implements Module {
 
     @Override
     public void update(CarControl control) {
-        angle = steering.getSteeringAngle(control.getRGBImage());
+        steer(control, control.getRGBImage(), control.getBlackWhiteMask());
+    }
+
+    @Override
+    public void update(CarControl control, FrameContext frame) {
+        steer(control, frame.getBlackWhite(), frame.getBlackWhiteMask());
+    }
+
+    /**
+     * Steers on the black and white image, or on the mask if there is one and the version reads it
+     */
+    private void steer(CarControl control, int[] blackWhite, BitMask mask) {
+        if (USE_LATENCY_COMPENSATION) {
+            steering.setMotion(speedOf(control.getVelocity()), control.getSteering(), latency());
+        }
+        if (mask != null && steering.usesMask()) {
+            angle = steering.getSteeringAngle(mask);
+        } else {
+            angle = steering.getSteeringAngle(blackWhite);
+        }
         control.steer(true, angle);
-        if (!steering.getMidPoints().isEmpty()) {
-            Point furthestPoint = steering.getMidPoints().get(steering.getMidPoints().size() - 1);
+        Point furthestPoint = steering.getFurthestPoint();
+        if (furthestPoint != null) {
             control.setFutureSteeringAngle((int) steering.getFutureSteepness(furthestPoint));
         }
     }
 
+    /**
+     * @return whether the steering version searches the black and white mask, so it should be decoded
+     */
+    public boolean usesMask() {
+        return steering != null && steering.usesMask();
+    }
+
+    /**
+     * Speed of the car in park meters per second, converted from ESC steps the way TrakSim does.
+     */
+    private double speedOf(int velocity) {
+        return velocity * DriverCons.D_fMinSpeed / DriverCons.D_MinESCact;
+    }
+
+    /**
+     * Median time from capturing a frame to commanding the steering servo in the last latency interval,
+     * or a frame time before any has been measured.
+     * @return the latency in seconds
+     */
+    private double latency() {
+        LatencyHistogram endToEnd = LatencyMonitor.getInstance().getInterval(LatencyMonitor.END_TO_END);
+        if (endToEnd == null || endToEnd.getCount() == 0) {
+            return DriverCons.D_FrameTime / 1000.0;
+        }
+        return endToEnd.getValueAtPercentile(50) / 1e9;
+    }
 
     @Override
     public void paint(CarControl control, Graphics g) {
@@ -89,16 +148,25 @@ public class SteeringModule implements Module {
             double widthMultiplier = (1.0 * control.getWindowWidth() / steering.getScreenWidth());
             double heightMultiplier = (1.0 * control.getWindowHeight() / steering.getCameraHeight());
 
-            for (int idx = 0; idx < steering.getMidPoints().size(); idx++) {
-                if (idx >= steering.getStartTarget() && idx <= steering.getEndTarget()) {
+            // Versions that reuse their points hand over a frame that is not refilled while it is drawn
+            PointOverlay overlay = steering.takeOverlay();
+            List<Point> midPoints = overlay != null ? overlay.getMidPoints() : steering.getMidPoints();
+            List<Point> leftPoints = overlay != null ? overlay.getLeftPoints() : steering.getLeftPoints();
+            List<Point> rightPoints = overlay != null ? overlay.getRightPoints() : steering.getRightPoints();
+            Point steerPoint = overlay != null ? overlay.getSteerPoint() : steering.getSteerPoint();
+            int startTarget = overlay != null ? overlay.getStartTarget() : steering.getStartTarget();
+            int endTarget = overlay != null ? overlay.getEndTarget() : steering.getEndTarget();
+
+            for (int idx = 0; idx < midPoints.size(); idx++) {
+                if (idx >= startTarget && idx <= endTarget) {
                     g.setColor(TARGET_POINT_COLOR);
-                    g.fillRect((int) ((steering.getMidPoints().get(idx).x - 2) * widthMultiplier),
-                            (int) ((steering.getMidPoints().get(idx).y + 10) * heightMultiplier),
+                    g.fillRect((int) ((midPoints.get(idx).x - 2) * widthMultiplier),
+                            (int) ((midPoints.get(idx).y + 10) * heightMultiplier),
                             4, 4);
                 } else {
                     g.setColor(MIDPOINT_COLOR);
-                    g.fillRect((int) ((steering.getMidPoints().get(idx).x - 2) * widthMultiplier),
-                            (int) ((steering.getMidPoints().get(idx).y + 10) * heightMultiplier),
+                    g.fillRect((int) ((midPoints.get(idx).x - 2) * widthMultiplier),
+                            (int) ((midPoints.get(idx).y + 10) * heightMultiplier),
                             4, 4);
                 }
             }
@@ -106,21 +174,21 @@ public class SteeringModule implements Module {
             // Draw left and right sides
             if (DriverCons.D_DrawOnSides) {
                 g.setColor(LEFT_LANE_COLOR);
-                for (com.apw.steering.steeringclasses.Point point : steering.getLeftPoints()) {
+                for (Point point : leftPoints) {
                     int xL = point.x - 4;
                     int yL = point.y - 4;
                     g.fillRect((int) (xL * widthMultiplier), (int) (yL * heightMultiplier) + 10, 8, 8);
                 }
                 g.setColor(RIGHT_LANE_COLOR);
-                for (Point point : steering.getRightPoints()) {
+                for (Point point : rightPoints) {
                     int xR = point.x - 4;
                     int yR = point.y - 4;
                     g.fillRect((int) (xR * widthMultiplier), (int) (yR * heightMultiplier) + 10, 8, 8);
                 }
             }
             g.setColor(STEER_POINT_COLOR);
-            g.fillRect((int) ((steering.getSteerPoint().x - 5) * widthMultiplier),
-                    (int) ((steering.getSteerPoint().y - 5) * heightMultiplier) + 10, 10, 10);
+            g.fillRect((int) ((steerPoint.x - 5) * widthMultiplier),
+                    (int) ((steerPoint.y - 5) * heightMultiplier) + 10, 10, 10);
         }
     }
 }
@@ -0,0 +1,95 @@
+package com.apw.steering.steeringclasses;
+
+/**
+ * Smooths a value measured once a frame, such as a heading, lane position or road width.
+ * The filter keeps an estimate of the value and of how much it changes each frame, predicts the next frame
+ * from them, and corrects the prediction by alpha of the error and the rate by beta of it.
+ * This is the steady state of a Kalman filter for a value moving at a constant rate, see trackingIndex,
+ * and with beta 0 it is an exponential moving average. For an average weighing the last few frames the same,
+ * use MovingAverage.
+ * It holds only primitives, so updating it does not allocate.
+ */
+public class AlphaBetaFilter {
+    private final double alpha;
+    private final double beta;
+    private final double initialValue;
+    private double value;
+    private double rate = 0;
+    private boolean measured = false;
+
+    /**
+     * @param alpha Fraction of the error the value is corrected by, 0-1. Higher follows faster, lower is smoother.
+     * @param beta Fraction of the error the rate is corrected by, 0 to not follow trends
+     * @param initialValue Value before the first measurement, predicted to stay the same
+     */
+    public AlphaBetaFilter(double alpha, double beta, double initialValue) {
+        this.alpha = alpha;
+        this.beta = beta;
+        this.initialValue = initialValue;
+        value = initialValue;
+    }
+
+    /**
+     * Filter with the steady state gains of a Kalman filter
+     *
+     * @param trackingIndex How much the value moves each frame compared to the noise of a measurement,
+     *                      process noise * frame time squared / measurement noise
+     * @param initialValue Value before the first measurement
+     */
+    public static AlphaBetaFilter trackingIndex(double trackingIndex, double initialValue) {
+        // Kalata's steady state gains
+        double r = (4 + trackingIndex - Math.sqrt(8 * trackingIndex + trackingIndex * trackingIndex)) / 4;
+        double alpha = 1 - r * r;
+        double beta = 2 * (2 - alpha) - 4 * Math.sqrt(1 - alpha);
+        return new AlphaBetaFilter(alpha, beta, initialValue);
+    }
+
+    /**
+     * Adds this frame's measurement. A measurement that is not finite is skipped like a missing one,
+     * as it would leave the value infinite or NaN from then on.
+     *
+     * @return the filtered value
+     */
+    public double update(double measurement) {
+        if (!Double.isFinite(measurement)) {
+            return predict();
+        }
+        measured = true;
+        double predicted = value + rate;
+        double error = measurement - predicted;
+        value = predicted + alpha * error;
+        rate += beta * error;
+        return value;
+    }
+
+    /**
+     * Moves on a frame without a measurement, continuing at the current rate
+     *
+     * @return the predicted value
+     */
+    public double predict() {
+        value += rate;
+        return value;
+    }
+
+    /**
+     * Forgets every measurement
+     */
+    public void reset() {
+        value = initialValue;
+        rate = 0;
+        measured = false;
+    }
+
+    public double getValue() {
+        return value;
+    }
+
+    public double getRate() {
+        return rate;
+    }
+
+    public boolean isMeasured() {
+        return measured;
+    }
+}
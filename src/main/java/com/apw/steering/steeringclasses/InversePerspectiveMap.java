@@ -0,0 +1,138 @@
+package com.apw.steering.steeringclasses;
+
+/**
+ * Lookup table that warps the steering rows of the black and white image into a top-down grid of the road.
+ * Each grid cell is a square of the ground in front of the car, cellSize meters wide.
+ * Grid row 0 is the closest row of the image searched, and each grid column is the same distance
+ * left or right of the car at every distance, so lane lines are parallel in the grid and the lane is
+ * the same width from near to far.
+ * The camera is assumed to look level, with the horizon on horizonRow.
+ * The table is built once, so warping a frame is a single pass of lookups.
+ */
+public class InversePerspectiveMap {
+    private static final int OUTSIDE = -1; // Table entry of a cell not seen in the image
+
+    private final int rows;
+    private final int columns;
+    private final double cellSize;
+    private final double halfWidth;
+    private final double nearDistance;
+    private final double focalLength;
+    private final double horizonRow;
+    private final double cameraHeight;
+    private final int centerColumn;
+    private final int[] pixelIndex; // Index into the image of each grid cell, or OUTSIDE
+
+    /**
+     * @param cameraWidth Width of the camera image (excluding map on right side)
+     * @param screenWidth Width of a row of the image
+     * @param firstRow Furthest image row used, the top of the steering region
+     * @param lastRow Closest image row used, the bottom of the steering region
+     * @param focalLength Focal length of the camera in pixels
+     * @param horizonRow Image row of the horizon
+     * @param cameraHeight Height of the camera above the road, the units cellSize is in
+     * @param cellSize Size of the ground each grid cell covers
+     * @param halfWidth Distance either side of the car the grid covers
+     * @param maxDistance Furthest the grid reaches ahead of the camera
+     */
+    public InversePerspectiveMap(int cameraWidth, int screenWidth, int firstRow, int lastRow, double focalLength,
+                                 double horizonRow, double cameraHeight, double cellSize, double halfWidth,
+                                 double maxDistance) {
+        if (lastRow <= horizonRow) {
+            throw new IllegalArgumentException("Steering rows must be below the horizon");
+        }
+        this.cellSize = cellSize;
+        this.halfWidth = halfWidth;
+        this.focalLength = focalLength;
+        this.horizonRow = horizonRow;
+        this.cameraHeight = cameraHeight;
+        centerColumn = cameraWidth / 2;
+        nearDistance = distanceOfRow(lastRow);
+        double farDistance = firstRow > horizonRow ? Math.min(distanceOfRow(firstRow), maxDistance) : maxDistance;
+        rows = Math.max(1, (int) ((farDistance - nearDistance) / cellSize) + 1);
+        columns = Math.max(1, (int) Math.round(2 * halfWidth / cellSize));
+
+        pixelIndex = new int[rows * columns];
+        for (int gridRow = 0; gridRow < rows; gridRow++) {
+            double distance = distanceOf(gridRow);
+            int imageRow = (int) Math.round(imageRow(distance));
+            for (int gridColumn = 0; gridColumn < columns; gridColumn++) {
+                int imageColumn = (int) Math.round(imageColumn(lateralOf(gridColumn), distance));
+                boolean seen = imageRow >= firstRow && imageRow <= lastRow
+                        && imageColumn >= 0 && imageColumn < cameraWidth;
+                pixelIndex[gridRow * columns + gridColumn] = seen ? imageRow * screenWidth + imageColumn : OUTSIDE;
+            }
+        }
+    }
+
+    /**
+     * Warps the black and white image into the grid
+     *
+     * @param pixels black and white image, white is 0xFFFFFF
+     * @param grid rows * columns cells, set to 1 where the road is white and 0 elsewhere
+     */
+    public void warp(int[] pixels, byte[] grid) {
+        for (int cell = 0; cell < pixelIndex.length; cell++) {
+            int index = pixelIndex[cell];
+            grid[cell] = (byte) (index != OUTSIDE && pixels[index] == 0xFFFFFF ? 1 : 0);
+        }
+    }
+
+    /**
+     * @return Whether a grid cell is in view of the camera
+     */
+    public boolean isSeen(int gridRow, int gridColumn) {
+        return pixelIndex[gridRow * columns + gridColumn] != OUTSIDE;
+    }
+
+    /**
+     * @return Distance ahead of the camera of a grid row
+     */
+    public double distanceOf(double gridRow) {
+        return nearDistance + gridRow * cellSize;
+    }
+
+    /**
+     * @return Grid row at a distance ahead of the camera, not limited to the grid
+     */
+    public double gridRowOf(double distance) {
+        return (distance - nearDistance) / cellSize;
+    }
+
+    /**
+     * @return Distance right of the car of the middle of a grid column, negative to the left
+     */
+    public double lateralOf(double gridColumn) {
+        return (gridColumn + 0.5) * cellSize - halfWidth;
+    }
+
+    /**
+     * @return Image row the road is on at a distance ahead of the camera
+     */
+    public double imageRow(double distance) {
+        return horizonRow + focalLength * cameraHeight / distance;
+    }
+
+    /**
+     * @return Image column of a point on the road
+     */
+    public double imageColumn(double lateral, double distance) {
+        return centerColumn + focalLength * lateral / distance;
+    }
+
+    private double distanceOfRow(double imageRow) {
+        return focalLength * cameraHeight / (imageRow - horizonRow);
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public double getCellSize() {
+        return cellSize;
+    }
+}
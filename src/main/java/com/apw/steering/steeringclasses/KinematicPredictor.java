@@ -0,0 +1,83 @@
+package com.apw.steering.steeringclasses;
+
+/**
+ * Bicycle model of the car, predicting where it will be when a steering command reaches the servo.
+ * The car drives an arc set by its speed and current wheel angle for the latency of the control loop,
+ * and points seen in the frame are moved into where the car will be at the end of it.
+ * Positions are relative to the car when the frame was captured: lateral is right of the car,
+ * distance is ahead of it, and heading is clockwise. The camera is taken to be on the rear axle.
+ */
+public class KinematicPredictor {
+    private static final double STRAIGHT = 1e-6; // Heading change below which the arc is treated as a line
+
+    private final double wheelBase;
+    private final double maxWheelAngle;
+    private double lateral = 0;
+    private double distance = 0;
+    private double heading = 0;
+
+    /**
+     * @param wheelBase Distance between the axles, in the units of the points moved
+     * @param maxWheelAngle Largest wheel angle the car can steer to, in degrees
+     */
+    public KinematicPredictor(double wheelBase, double maxWheelAngle) {
+        this.wheelBase = wheelBase;
+        this.maxWheelAngle = maxWheelAngle;
+    }
+
+    /**
+     * Moves the car along the arc it is driving
+     *
+     * @param speed Speed of the car, in units per second
+     * @param wheelAngle Angle the wheels are steered to in degrees, positive right
+     * @param seconds How long the car drives before the steering command takes effect
+     */
+    public void predict(double speed, double wheelAngle, double seconds) {
+        wheelAngle = Math.max(-maxWheelAngle, Math.min(wheelAngle, maxWheelAngle));
+        double travelled = speed * seconds;
+        double curvature = Math.tan(Math.toRadians(wheelAngle)) / wheelBase;
+        heading = travelled * curvature;
+        if (Math.abs(heading) < STRAIGHT) {
+            distance = travelled;
+            lateral = travelled * heading / 2;
+        } else {
+            distance = Math.sin(heading) / curvature;
+            lateral = (1 - Math.cos(heading)) / curvature;
+        }
+    }
+
+    /**
+     * Forgets the motion, so points are left where they are
+     */
+    public void reset() {
+        lateral = 0;
+        distance = 0;
+        heading = 0;
+    }
+
+    /**
+     * @return How far right of the predicted car a point seen in the frame will be
+     */
+    public double lateralOf(double pointLateral, double pointDistance) {
+        return (pointLateral - lateral) * Math.cos(heading) - (pointDistance - distance) * Math.sin(heading);
+    }
+
+    /**
+     * @return How far ahead of the predicted car a point seen in the frame will be
+     */
+    public double distanceOf(double pointLateral, double pointDistance) {
+        return (pointLateral - lateral) * Math.sin(heading) + (pointDistance - distance) * Math.cos(heading);
+    }
+
+    public double getLateral() {
+        return lateral;
+    }
+
+    public double getDistance() {
+        return distance;
+    }
+
+    public double getHeading() {
+        return heading;
+    }
+}
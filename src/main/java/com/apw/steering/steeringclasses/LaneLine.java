@@ -1,58 +1,238 @@
 package com.apw.steering.steeringclasses;
 
-import java.util.ArrayList;
+import com.apw.imagemanagement.BitMask;
 
+/**
+ * One side of the lane, as the column of the line on each row searched.
+ * Columns are stored in a preallocated array indexed by the order rows were searched in,
+ * so searching a frame does not allocate.
+ * The previous frame's columns are kept, so a row can be searched near where the line was last frame.
+ */
 public class LaneLine {
-    private ArrayList<Point> lanePoints;
-    private int white = 0xffffff;
-    private int lastLeftX;
-    private int lastRightX;
+    public static final int NOT_FOUND = -1; // Column of a row where no line was found
+    private static final int WHITE = 0xffffff;
+    private int[] columns;
+    private int size = 0;
+    private int[] previousColumns; // Columns found last frame
+    private int previousSize = 0;
+    private final int window;
+    private final int neighbourRows;
 
-    public LaneLine() {
-        lanePoints = new ArrayList<>();
+    /**
+     * @param capacity Most rows searched in a frame
+     * @param window Pixels either side of last frame's line that trackLeft and trackRight search
+     * @param neighbourRows Rows either side a lost row looks for last frame's line to search near
+     */
+    public LaneLine(int capacity, int window, int neighbourRows) {
+        columns = new int[capacity];
+        previousColumns = new int[capacity];
+        this.window = window;
+        this.neighbourRows = neighbourRows;
     }
 
-    public Point getLeftPoint(int[] pixels, int row, int screenWidth, int startingX) {
-        Point leftPoint = new Point();
-        int lastLeftX = startingX;
+    /**
+     * @param capacity Most rows searched in a frame
+     */
+    public LaneLine(int capacity) {
+        this(capacity, 0, 0);
+    }
 
-        // Create lastLeftX, which is where the algorithm begins searching for a lane.
-        if (!lanePoints.isEmpty()) {
-            if (!lanePoints.get(lanePoints.size() - 1).isEmpty()) {
-                lastLeftX = lanePoints.get(lanePoints.size() - 1).x + 100;
+    /**
+     * Searches the next row within window pixels of where the line was on that row last frame,
+     * the same direction as findLeft. If the line was there last frame but has moved, falls back to findLeft.
+     * A row without the line last frame is searched near the line on the closest row that had it,
+     * and only scanned in full when searchLost is set.
+     *
+     * @return column of the first white pixel, or NOT_FOUND
+     */
+    public int trackLeft(int[] pixels, int row, int screenWidth, int startingX, boolean searchLost) {
+        if (size >= previousSize) {
+            return findLeft(pixels, row, screenWidth, startingX);
+        }
+        int lastColumn = lastFrameColumn();
+        if (lastColumn != NOT_FOUND) {
+            int rowStart = row * screenWidth;
+            int from = Math.min(lastColumn + window, screenWidth - 1);
+            int to = Math.max(lastColumn - window, 1);
+            for (int column = from; column >= to; column--) {
+                if (pixels[rowStart + column] == WHITE) {
+                    return column;
+                }
             }
         }
+        return searchLost || previousColumns[size] != NOT_FOUND
+                ? findLeft(pixels, row, screenWidth, startingX) : NOT_FOUND;
+    }
 
-        // search from lastLeftX to the left edge of the screen for a white pixel.
-        for (int column = lastLeftX; column > 0; column--) {
-            // If the Pixel is white, Add it to leftPoints.
-            if (pixels[(row * screenWidth) + column] == white) {
-                leftPoint = new Point(column, row);
-                break;
+    /**
+     * Searches the next row within window pixels of where the line was on that row last frame,
+     * the same direction as findRight. If the line was there last frame but has moved, falls back to findRight.
+     * A row without the line last frame is searched near the line on the closest row that had it,
+     * and only scanned in full when searchLost is set.
+     *
+     * @return column of the first white pixel, or NOT_FOUND
+     */
+    public int trackRight(int[] pixels, int row, int screenWidth, int startingX, int cameraWidth,
+                          boolean searchLost) {
+        if (size >= previousSize) {
+            return findRight(pixels, row, screenWidth, startingX, cameraWidth);
+        }
+        int lastColumn = lastFrameColumn();
+        if (lastColumn != NOT_FOUND) {
+            int rowStart = row * screenWidth;
+            int from = Math.max(lastColumn - window, 0);
+            int to = Math.min(lastColumn + window, cameraWidth - 1);
+            for (int column = from; column <= to; column++) {
+                if (pixels[rowStart + column] == WHITE) {
+                    return column;
+                }
+            }
+        }
+        return searchLost || previousColumns[size] != NOT_FOUND
+                ? findRight(pixels, row, screenWidth, startingX, cameraWidth) : NOT_FOUND;
+    }
+
+    /**
+     * Same search as trackLeft, on a packed black and white mask
+     */
+    public int trackLeft(BitMask mask, int row, int startingX, boolean searchLost) {
+        if (size >= previousSize) {
+            return findLeft(mask, row, startingX);
+        }
+        int lastColumn = lastFrameColumn();
+        if (lastColumn != NOT_FOUND) {
+            int from = Math.min(lastColumn + window, mask.getWidth() - 1);
+            int to = Math.max(lastColumn - window, 1);
+            int column = mask.nextSetBitLeft(row, from);
+            if (column >= to) {
+                return column;
+            }
+        }
+        return searchLost || previousColumns[size] != NOT_FOUND ? findLeft(mask, row, startingX) : NOT_FOUND;
+    }
+
+    /**
+     * Same search as trackRight, on a packed black and white mask
+     */
+    public int trackRight(BitMask mask, int row, int startingX, int cameraWidth, boolean searchLost) {
+        if (size >= previousSize) {
+            return findRight(mask, row, startingX, cameraWidth);
+        }
+        int lastColumn = lastFrameColumn();
+        if (lastColumn != NOT_FOUND) {
+            int from = Math.max(lastColumn - window, 0);
+            int to = Math.min(lastColumn + window, cameraWidth - 1);
+            int column = mask.nextSetBitRight(row, from);
+            if (column != -1 && column <= to) {
+                return column;
+            }
+        }
+        return searchLost || previousColumns[size] != NOT_FOUND
+                ? findRight(mask, row, startingX, cameraWidth) : NOT_FOUND;
+    }
+
+    /**
+     * Column of the line last frame on the row about to be searched,
+     * or if it was not found there, on the closest row within neighbourRows that had it.
+     */
+    private int lastFrameColumn() {
+        for (int offset = 0; offset <= neighbourRows; offset++) {
+            if (size + offset < previousSize && previousColumns[size + offset] != NOT_FOUND) {
+                return previousColumns[size + offset];
+            }
+            if (offset > 0 && size - offset >= 0 && previousColumns[size - offset] != NOT_FOUND) {
+                return previousColumns[size - offset];
             }
         }
-        return leftPoint;
+        return NOT_FOUND;
     }
 
-    public Point getRightPoint(int[] pixels, int row, int screenWidth, int startingX, int cameraWidth) {
-        Point rightPoint = new Point();
+    /**
+     * Searches left from startingX, or from 100 pixels right of the last line found if the previous row had one.
+     *
+     * @return column of the first white pixel, or NOT_FOUND
+     */
+    public int findLeft(int[] pixels, int row, int screenWidth, int startingX) {
+        int lastLeftX = Math.min(leftSearchStart(startingX), screenWidth - 1);
 
         // search from lastLeftX to the left edge of the screen for a white pixel.
-        for (int column = startingX; column < cameraWidth; column++) {
-            // If the Pixel is white, Add it to leftPoints.
-            if (pixels[(row * screenWidth) + column] == white) {
-                rightPoint = new Point(column, row);
-                break;
+        int rowStart = row * screenWidth;
+        for (int column = lastLeftX; column > 0; column--) {
+            if (pixels[rowStart + column] == WHITE) {
+                return column;
             }
         }
-        return rightPoint;
+        return NOT_FOUND;
     }
 
-    public void clearPoints() {
-        lanePoints.clear();
+    /**
+     * Searches right from startingX up to the edge of the camera image.
+     *
+     * @return column of the first white pixel, or NOT_FOUND
+     */
+    public int findRight(int[] pixels, int row, int screenWidth, int startingX, int cameraWidth) {
+        int rowStart = row * screenWidth;
+        for (int column = Math.max(startingX, 0); column < cameraWidth; column++) {
+            if (pixels[rowStart + column] == WHITE) {
+                return column;
+            }
+        }
+        return NOT_FOUND;
+    }
+
+    /**
+     * Same search as findLeft, on a packed black and white mask
+     */
+    public int findLeft(BitMask mask, int row, int startingX) {
+        // The left edge of the screen is never part of the lane.
+        int column = mask.nextSetBitLeft(row, leftSearchStart(startingX));
+        return column > 0 ? column : NOT_FOUND;
+    }
+
+    /**
+     * Same search as findRight, on a packed black and white mask
+     */
+    public int findRight(BitMask mask, int row, int startingX, int cameraWidth) {
+        int column = mask.nextSetBitRight(row, startingX);
+        return column >= 0 && column < cameraWidth ? column : NOT_FOUND;
+    }
+
+    private int leftSearchStart(int startingX) {
+        if (size > 0 && columns[size - 1] != NOT_FOUND) {
+            return columns[size - 1] + 100;
+        }
+        return startingX;
+    }
+
+    /**
+     * Records the result of searching the next row
+     *
+     * @param column column of the line, or NOT_FOUND
+     */
+    public void add(int column) {
+        columns[size++] = column;
+    }
+
+    public int getColumn(int index) {
+        return columns[index];
     }
 
-    public ArrayList<Point> getLanePoints() {
-        return lanePoints;
+    public boolean isFound(int index) {
+        return columns[index] != NOT_FOUND;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Starts a new frame, keeping this frame's columns to track from
+     */
+    public void clearPoints() {
+        int[] swap = previousColumns;
+        previousColumns = columns;
+        previousSize = size;
+        columns = swap;
+        size = 0;
     }
 }
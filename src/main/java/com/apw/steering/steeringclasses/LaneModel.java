@@ -0,0 +1,139 @@
+package com.apw.steering.steeringclasses;
+
+/**
+ * Quadratic model of a lane line, x = a*u^2 + b*u + c where u is the row relative to a reference row.
+ * Points are accumulated into the sums of the least squares normal equations as they are found,
+ * so fitting needs no list of points and does not allocate.
+ * Rows are measured from the reference row to keep the sums small enough to solve accurately.
+ *
+ * @see LaneLine
+ */
+public class LaneModel {
+    private static final double SINGULAR = 1e-9; // Determinant below which a fit falls back to a line
+
+    private int referenceRow;
+    private int count;
+    private double sumU, sumU2, sumU3, sumU4;
+    private double sumX, sumXU, sumXU2;
+    private double a, b, c;
+    private boolean fitted;
+
+    /**
+     * Forgets all points, to start a new frame
+     *
+     * @param referenceRow Row the model is centered on, best near the middle of the rows searched.
+     */
+    public void reset(int referenceRow) {
+        this.referenceRow = referenceRow;
+        count = 0;
+        sumU = sumU2 = sumU3 = sumU4 = 0;
+        sumX = sumXU = sumXU2 = 0;
+        a = b = c = 0;
+        fitted = false;
+    }
+
+    /**
+     * Adds a point of the line
+     *
+     * @param x column
+     * @param y row
+     */
+    public void add(int x, int y) {
+        double u = y - referenceRow;
+        double u2 = u * u;
+        count++;
+        sumU += u;
+        sumU2 += u2;
+        sumU3 += u2 * u;
+        sumU4 += u2 * u2;
+        sumX += x;
+        sumXU += x * u;
+        sumXU2 += x * u2;
+    }
+
+    /**
+     * Solves for the coefficients from the points added since reset.
+     * With too few points or rows too close together for a curve, fits a straight line instead.
+     *
+     * @param minimumPoints Fewest points the model is trusted with
+     * @return Whether the model was fitted
+     */
+    public boolean fit(int minimumPoints) {
+        fitted = false;
+        if (count < Math.max(minimumPoints, 2)) {
+            return false;
+        }
+
+        // Normal equations:
+        // | sumU4 sumU3 sumU2 | |a|   | sumXU2 |
+        // | sumU3 sumU2 sumU  | |b| = | sumXU  |
+        // | sumU2 sumU  count | |c|   | sumX   |
+        double det = sumU4 * (sumU2 * count - sumU * sumU)
+                - sumU3 * (sumU3 * count - sumU * sumU2)
+                + sumU2 * (sumU3 * sumU - sumU2 * sumU2);
+        if (count >= 3 && Math.abs(det) > SINGULAR * sumU4 * sumU2 * count) {
+            a = (sumXU2 * (sumU2 * count - sumU * sumU)
+                    - sumU3 * (sumXU * count - sumU * sumX)
+                    + sumU2 * (sumXU * sumU - sumU2 * sumX)) / det;
+            b = (sumU4 * (sumXU * count - sumU * sumX)
+                    - sumXU2 * (sumU3 * count - sumU * sumU2)
+                    + sumU2 * (sumU3 * sumX - sumXU * sumU2)) / det;
+            c = (sumU4 * (sumU2 * sumX - sumU * sumXU)
+                    - sumU3 * (sumU3 * sumX - sumXU * sumU2)
+                    + sumXU2 * (sumU3 * sumU - sumU2 * sumU2)) / det;
+        } else {
+            double lineDet = sumU2 * count - sumU * sumU;
+            if (Math.abs(lineDet) <= SINGULAR * sumU2 * count) {
+                return false;
+            }
+            a = 0;
+            b = (sumXU * count - sumU * sumX) / lineDet;
+            c = (sumU2 * sumX - sumU * sumXU) / lineDet;
+        }
+        fitted = true;
+        return true;
+    }
+
+    /**
+     * @return Column of the line on row y
+     */
+    public double xAt(double y) {
+        double u = y - referenceRow;
+        return (a * u + b) * u + c;
+    }
+
+    /**
+     * @return Columns the line moves per row, at row y
+     */
+    public double slopeAt(double y) {
+        return 2 * a * (y - referenceRow) + b;
+    }
+
+    /**
+     * Signed curvature of the line at row y, in 1/pixels. Positive curves right going up the image.
+     */
+    public double curvatureAt(double y) {
+        double slope = slopeAt(y);
+        return 2 * a / Math.pow(1 + slope * slope, 1.5);
+    }
+
+    public boolean isFitted() {
+        return fitted;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public double getA() {
+        return a;
+    }
+
+    public double getB() {
+        return b;
+    }
+
+    public double getC() {
+        return c;
+    }
+}
@@ -0,0 +1,49 @@
+package com.apw.steering.steeringclasses;
+
+/**
+ * Averages a value measured once a frame over the last few frames, weighing each of them the same.
+ * The frames are kept in a ring of primitives, so updating it does not allocate.
+ * Measurements that are not finite, such as a slope between two points in the same column, are skipped,
+ * so one bad frame never stays in the average.
+ *
+ * @see AlphaBetaFilter
+ */
+public class MovingAverage {
+    private final double[] values; // Ring of the last frames
+    private int oldest = 0; // Index of the oldest frame in values
+
+    /**
+     * @param frames Frames in the average
+     * @param initialValue Value the average is started full of
+     */
+    public MovingAverage(int frames, double initialValue) {
+        values = new double[frames];
+        for (int idx = 0; idx < values.length; idx++) {
+            values[idx] = initialValue;
+        }
+    }
+
+    /**
+     * Adds this frame's measurement in place of the oldest
+     *
+     * @return the average
+     */
+    public double update(double measurement) {
+        if (Double.isFinite(measurement)) {
+            values[oldest] = measurement;
+            oldest = (oldest + 1) % values.length;
+        }
+        return getValue();
+    }
+
+    /**
+     * @return the average of the last frames, summed oldest first
+     */
+    public double getValue() {
+        double sum = 0;
+        for (int idx = 0; idx < values.length; idx++) {
+            sum += values[(oldest + idx) % values.length];
+        }
+        return sum / values.length;
+    }
+}
@@ -0,0 +1,57 @@
+package com.apw.steering.steeringclasses;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands PointOverlays from the steering thread to the painter without allocating, as a triple buffer.
+ * Steering fills one overlay, the painter draws another, and the newest filled one waits between them.
+ * The painter gives its overlay back by taking the next one, so an overlay is never refilled while it is drawn,
+ * however far the painter falls behind.
+ */
+public class OverlayBuffer {
+    private static final int INDEX = 3; // Bits of state holding the index of the waiting overlay
+    private static final int FRESH = 4; // Set in state when the waiting overlay has not been taken yet
+
+    private final PointOverlay[] overlays = new PointOverlay[3];
+    private final AtomicInteger state = new AtomicInteger(1);
+    private int filling = 0; // Only used by the steering thread
+    private int painting = 2; // Only used by the painter
+
+    /**
+     * @param rows Most points of each kind in a frame
+     */
+    public OverlayBuffer(int rows) {
+        for (int idx = 0; idx < overlays.length; idx++) {
+            overlays[idx] = new PointOverlay(rows);
+        }
+    }
+
+    /**
+     * @return the cleared overlay for the steering thread to fill with this frame's points
+     */
+    public PointOverlay fill() {
+        PointOverlay overlay = overlays[filling];
+        overlay.clear();
+        return overlay;
+    }
+
+    /**
+     * Makes the overlay being filled the newest one, the steering thread must not change it afterwards
+     */
+    public void publish() {
+        filling = state.getAndSet(filling | FRESH) & INDEX;
+    }
+
+    /**
+     * Takes the newest overlay for painting, handing back the one taken before.
+     * Only one thread may paint.
+     *
+     * @return an overlay that does not change until the next call
+     */
+    public PointOverlay take() {
+        if ((state.get() & FRESH) != 0) {
+            painting = state.getAndSet(painting) & INDEX;
+        }
+        return overlays[painting];
+    }
+}
@@ -0,0 +1,98 @@
+package com.apw.steering.steeringclasses;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Left, right and mid points and the steer point of a frame for SteeringModule to draw,
+ * filled from a pool of reused Points.
+ * Steering versions hand them to the painter through an OverlayBuffer, so a frame being painted
+ * is not changed while it is drawn.
+ */
+public class PointOverlay {
+    private final List<Point> leftPoints;
+    private final List<Point> rightPoints;
+    private final List<Point> midPoints;
+    private final Point[] pool;
+    private int used = 0;
+    private final Point steerPoint = new Point(0, 0);
+    private int startTarget = 0; // Mid points from startTarget to endTarget were averaged into the steer point
+    private int endTarget = 0;
+
+    /**
+     * @param rows Most points of each kind in a frame
+     */
+    public PointOverlay(int rows) {
+        leftPoints = new ArrayList<>(rows);
+        rightPoints = new ArrayList<>(rows);
+        midPoints = new ArrayList<>(rows);
+        pool = new Point[rows * 3];
+        for (int idx = 0; idx < pool.length; idx++) {
+            pool[idx] = new Point(0, 0);
+        }
+    }
+
+    public void clear() {
+        leftPoints.clear();
+        rightPoints.clear();
+        midPoints.clear();
+        used = 0;
+        startTarget = 0;
+        endTarget = 0;
+    }
+
+    public void addLeft(int x, int y) {
+        leftPoints.add(next(x, y));
+    }
+
+    public void addRight(int x, int y) {
+        rightPoints.add(next(x, y));
+    }
+
+    public void addMid(int x, int y) {
+        midPoints.add(next(x, y));
+    }
+
+    /**
+     * @param steerPoint point steered towards
+     * @param startTarget first mid point averaged into it
+     * @param endTarget last mid point averaged into it
+     */
+    public void setSteerPoint(Point steerPoint, int startTarget, int endTarget) {
+        this.steerPoint.setX(steerPoint.getX());
+        this.steerPoint.setY(steerPoint.getY());
+        this.startTarget = startTarget;
+        this.endTarget = endTarget;
+    }
+
+    private Point next(int x, int y) {
+        Point point = pool[used++];
+        point.setX(x);
+        point.setY(y);
+        return point;
+    }
+
+    public List<Point> getLeftPoints() {
+        return leftPoints;
+    }
+
+    public List<Point> getRightPoints() {
+        return rightPoints;
+    }
+
+    public List<Point> getMidPoints() {
+        return midPoints;
+    }
+
+    public Point getSteerPoint() {
+        return steerPoint;
+    }
+
+    public int getStartTarget() {
+        return startTarget;
+    }
+
+    public int getEndTarget() {
+        return endTarget;
+    }
+}
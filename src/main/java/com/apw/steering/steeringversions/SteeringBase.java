@@ -2,7 +2,9 @@ package com.apw.steering.steeringversions;
 import com.apw.apw3.DriverCons;
 
 import com.apw.carcontrol.CarControl;
+import com.apw.imagemanagement.BitMask;
 import com.apw.steering.steeringclasses.Point;
+import com.apw.steering.steeringclasses.PointOverlay;
 import com.apw.steering.Steerable;
 import java.util.ArrayList;
 import java.util.List;
@@ -34,6 +36,8 @@ public abstract class SteeringBase implements Steerable {
     private List<Double> posLog = new ArrayList<>(); // Array list for logging positions fed into it
     private double integral, // The integral of the
             previousError;  // PID
+    private double curvature; // Curvature of the lane at the steer point, in 1/pixels. Positive curves right.
+    private int[] maskRaster; // Mask unpacked for versions that steer on the raster
 
     public SteeringBase(int cameraWidth, int cameraHeight, int screenWidth) {
         this.cameraWidth = cameraWidth;
@@ -66,6 +70,58 @@ public abstract class SteeringBase implements Steerable {
         return Math.abs(turnAngle) / (45);
     }
 
+    /**
+     * The furthest point ahead on the lane, used to anticipate turns.
+     * @return the last mid point, or null if there are none
+     */
+    public Point getFurthestPoint() {
+        return getMidPoints().isEmpty() ? null : getMidPoints().get(getMidPoints().size() - 1);
+    }
+
+    /**
+     * Takes the points of the newest frame for painting, handing back the overlay taken before.
+     * The overlay returned does not change until the next call, so only one thread may paint.
+     * @return the newest frame's points, or null for versions that paint from the point lists
+     */
+    public PointOverlay takeOverlay() {
+        return null;
+    }
+
+    /**
+     * Tells the steering how the car is moving before a frame, for versions that steer from where the car
+     * will be once the angle reaches the servo. Versions that steer from where the frame was taken ignore it.
+     *
+     * @param speed speed of the car, in park meters per second
+     * @param steering angle the car is steering at, in degrees
+     * @param latency seconds from capturing a frame to commanding the servo
+     */
+    public void setMotion(double speed, int steering, double latency) {
+    }
+
+    /**
+     * @return whether this version reads the packed black and white mask directly,
+     * so steering on the mask is cheaper than on the raster
+     */
+    public boolean usesMask() {
+        return false;
+    }
+
+    /**
+     * Same as getSteeringAngle(int[]), on the packed black and white mask.
+     * Versions that do not read the mask steer on it unpacked into a raster kept between frames.
+     *
+     * @param mask the black and white mask of the screen
+     * @return The degree offset
+     */
+    public int getSteeringAngle(BitMask mask) {
+        int size = mask.getWidth() * mask.getHeight();
+        if (maskRaster == null || maskRaster.length != size) {
+            maskRaster = new int[size];
+        }
+        mask.toRaster(maskRaster, 0xFFFFFF);
+        return getSteeringAngle(maskRaster);
+    }
+
     public double getFutureSteepness(Point furthestPoint) {
         double furthestPointXOffset = Math.round(furthestPoint.getX() - steerPoint.getX());
         return Math.atan(furthestPointXOffset / steerPoint.getY()) * (180 / Math.PI);
@@ -208,6 +264,14 @@ public abstract class SteeringBase implements Steerable {
         this.midPoints = midPoints;
     }
 
+    public double getCurvature() {
+        return curvature;
+    }
+
+    public void setCurvature(double curvature) {
+        this.curvature = curvature;
+    }
+
     public List<Double> getPosLog() {
         return posLog;
     }
@@ -2,8 +2,8 @@ package com.apw.steering.steeringversions;
 
 import com.apw.carcontrol.CarControl;
 
+import com.apw.steering.steeringclasses.MovingAverage;
 import com.apw.steering.steeringclasses.Point;
-import java.util.ArrayList;
 import static com.apw.steering.SteeringConstants.MAX_DIFF;
 import static com.apw.steering.SteeringConstants.MAX_DIST_LOOK;
 import static com.apw.steering.SteeringConstants.MIN_DIST_LOOK;
@@ -22,7 +22,8 @@ public class SteeringMk2 extends SteeringBase {
 
     private boolean leftSideFound = false;
     private boolean rightSideFound = false;
-    private ArrayList<Integer> previousHeadings = new ArrayList<>(); // Array containing the previous frames' degree
+    // Averages the degree over the previous frames
+    private final MovingAverage headingAverage = new MovingAverage(NUM_PREVIOUS, 0);
     private int furthestY; // Furthest point to look for white lines.
     private int previousMidX;
 
@@ -37,9 +38,6 @@ public class SteeringMk2 extends SteeringBase {
         super(cameraWidth, cameraHeight, screenWidth);
         furthestY = (int) (cameraHeight * 0.55);
         previousMidX = screenWidth / 2;
-        for (int count = 0; count < NUM_PREVIOUS; count++) {
-            previousHeadings.add(0);
-        }
     }
 
     /**
@@ -51,9 +49,6 @@ public class SteeringMk2 extends SteeringBase {
         super(control);
         furthestY = (int) (getCameraHeight() * 0.55);
         previousMidX = getScreenWidth() / 2;
-        for (int count = 0; count < NUM_PREVIOUS; count++) {
-            previousHeadings.add(0);
-        }
     }
 
     /**
@@ -67,14 +62,7 @@ public class SteeringMk2 extends SteeringBase {
         findPoints(pixels);
         setSteerPoint(calculateSteerPoint());
         int frameDeg = getDegreeOffset(getOrigin(), getSteerPoint());
-        double averageDeg = 0;
-
-        previousHeadings.add(frameDeg);
-        previousHeadings.remove(0);
-        for (Integer deg : previousHeadings) {
-            averageDeg += deg;
-        }
-        return (int) (averageDeg / NUM_PREVIOUS) + 5;
+        return (int) headingAverage.update(frameDeg) + 5;
         //return 0;
     }
 
@@ -1,22 +1,37 @@
 package com.apw.steering.steeringversions;
 
 import com.apw.carcontrol.CarControl;
+import com.apw.imagemanagement.BitMask;
 import com.apw.steering.steeringclasses.LaneLine;
+import com.apw.steering.steeringclasses.LaneModel;
+import com.apw.steering.steeringclasses.MovingAverage;
 import com.apw.steering.steeringclasses.Point;
-import java.util.ArrayList;
+import com.apw.steering.steeringclasses.OverlayBuffer;
+import com.apw.steering.steeringclasses.PointOverlay;
+import java.util.List;
 import static com.apw.steering.SteeringConstants.DEFAULT_ROAD_WIDTH;
 import static com.apw.steering.SteeringConstants.LOOK_DIST;
+import static com.apw.steering.SteeringConstants.MAX_DIST_LOOK;
+import static com.apw.steering.SteeringConstants.MIN_DIST_LOOK;
 import static com.apw.steering.SteeringConstants.MINIMUM_RELIABLE_OFFSET;
+import static com.apw.steering.SteeringConstants.MIN_MODEL_POINTS;
 import static com.apw.steering.SteeringConstants.PREVIOUS_SLOPES;
 import static com.apw.steering.SteeringConstants.SEARCH_OFFSET;
 import static com.apw.steering.SteeringConstants.START_SEARCH;
 import static com.apw.steering.SteeringConstants.START_SLOPE;
+import static com.apw.steering.SteeringConstants.TRACKING_REACQUIRE;
+import static com.apw.steering.SteeringConstants.TRACKING_ROWS;
+import static com.apw.steering.SteeringConstants.TRACKING_WINDOW;
+import static com.apw.steering.SteeringConstants.USE_BIT_MASK;
+import static com.apw.steering.SteeringConstants.USE_LANE_MODEL;
+import static com.apw.steering.SteeringConstants.USE_LANE_TRACKING;
 import static com.apw.steering.SteeringConstants.USE_NO_LANE_DETECTION;
 
 /**
  * SteeringMk4 is remarkably good at detecting lines in the road. It calculates the average width of the road
  * at each respective Y position. This allows it to know how wide a road is, even if only a single line is detected.
  * It is also much more organized compared to SteeringMk2
+ * Rows are searched in a loop into preallocated arrays, so steering a frame does not allocate.
  *
  * @see com.apw.steering.Steerable
  * @see SteeringMk2
@@ -29,9 +44,20 @@ public class SteeringMk4 extends SteeringBase {
     private Point calcSlopePoint1 = new Point();
     private Point calcSlopePoint2 = new Point();
     private float slope; // Slope of the equation that is equal to road width, with respect to screen height.
-    private LaneLine rightLine = new LaneLine(); // LaneLine that contains the left line.
-    private LaneLine leftLine = new LaneLine(); // LaneLine that contains the right line.
-    private ArrayList<Float> pastSlopes = new ArrayList<>(); // ArrayList that contains the past few slopes
+    private final LaneLine rightLine; // LaneLine that contains the right line.
+    private final LaneLine leftLine; // LaneLine that contains the left line.
+    // Averages the slope over the past few frames
+    private final MovingAverage slopeAverage = new MovingAverage((int) PREVIOUS_SLOPES, START_SLOPE);
+    private final int[] midXs; // Mid point of each row that has one, from the bottom of the screen up
+    private final int[] midYs;
+    private int midCount;
+    private final Point steerPoint = new Point(0, 0);
+    private final LaneModel leftModel = new LaneModel(); // Curve fitted to the left line
+    private final LaneModel rightModel = new LaneModel(); // Curve fitted to the right line
+    private final Point furthestPoint = new Point(0, 0);
+    private boolean modelFitted = false;
+    private final OverlayBuffer overlays; // Points handed to the painter
+    private int frameCount = 0;
 
 
     /**
@@ -43,9 +69,12 @@ public class SteeringMk4 extends SteeringBase {
      */
     public SteeringMk4(int cameraWidth, int cameraHeight, int screenWidth) {
         super(cameraWidth, cameraHeight, screenWidth);
-        for (int idx = 0; idx < PREVIOUS_SLOPES; idx++) {
-            pastSlopes.add(START_SLOPE);
-        }
+        leftLine = new LaneLine(cameraHeight, TRACKING_WINDOW, TRACKING_ROWS);
+        rightLine = new LaneLine(cameraHeight, TRACKING_WINDOW, TRACKING_ROWS);
+        midXs = new int[cameraHeight];
+        midYs = new int[cameraHeight];
+        overlays = new OverlayBuffer(cameraHeight);
+        initializeArrays();
     }
 
     /**
@@ -54,9 +83,16 @@ public class SteeringMk4 extends SteeringBase {
      */
     public SteeringMk4(CarControl control) {
         super(control);
-        for (int idx = 0; idx < PREVIOUS_SLOPES; idx++) {
-            pastSlopes.add(START_SLOPE);
-        }
+        leftLine = new LaneLine(getCameraHeight(), TRACKING_WINDOW, TRACKING_ROWS);
+        rightLine = new LaneLine(getCameraHeight(), TRACKING_WINDOW, TRACKING_ROWS);
+        midXs = new int[getCameraHeight()];
+        midYs = new int[getCameraHeight()];
+        overlays = new OverlayBuffer(getCameraHeight());
+        initializeArrays();
+    }
+
+    private void initializeArrays() {
+        setSteerPoint(steerPoint);
     }
 
     /**
@@ -66,93 +102,154 @@ public class SteeringMk4 extends SteeringBase {
      */
     @Override
     public int getSteeringAngle(int[] pixels) {
+        return steer(pixels, null);
+    }
+
+    /**
+     * Same as getSteeringAngle(int[]), skipping up to 64 black pixels at a time on the mask.
+     * @param mask the black and white mask of the screen
+     * @return The degree offset
+     */
+    @Override
+    public int getSteeringAngle(BitMask mask) {
+        return steer(null, mask);
+    }
+
+    @Override
+    public boolean usesMask() {
+        return USE_BIT_MASK;
+    }
+
+    private int steer(int[] pixels, BitMask mask) {
         leftLine.clearPoints();
         rightLine.clearPoints();
-        findLaneLines(pixels, getCameraHeight() - START_SEARCH, getCameraWidth() / 2, getCameraWidth() / 2);
-        setMidPoints(calculateMidPoints());
-        setSteerPoint(calculateSteerPoint());
-        setLeftPoints(leftLine.getLanePoints());
-        setRightPoints(rightLine.getLanePoints());
+        findLaneLines(pixels, mask);
+        calculateMidPoints();
+        calculateSteerPoint(steerPoint);
+        if (USE_LANE_MODEL) {
+            fitLaneModel();
+        }
+        publishPoints();
         return getDegreeOffset(getOrigin(), getSteerPoint());
     }
 
     /**
-     * Recursive method that searches for lane lines detected in the image.
-     * Each call to findLaneLines will calculate one row of pixels.
-     * @param pixels The image containing the road
-     * @param row The current Y-level the method is searching in in the image.
-     * @param leftStartingX The current X-level the method begins searching out from to find a white pixel (On the Left)
-     * @param rightStartingX The current X-level the method begins searching out from to find a white pixel (on the right)
+     * Searches for the lane lines one row at a time, from START_SEARCH pixels above the bottom of the image
+     * up to LOOK_DIST of its height.
+     * Each row is searched out from where the lines were found on the row below,
+     * or with USE_LANE_TRACKING first near where they were on that row last frame.
+     * When tracking, rows with no line last frame are searched in full every TRACKING_REACQUIRE frames.
+     * @param pixels The image containing the road, or null to search the mask
+     * @param mask The image containing the road packed one bit per pixel, or null to search the pixels
      */
-    private void findLaneLines(int[] pixels, int row, int leftStartingX, int rightStartingX) {
-        if (row > getCameraHeight() * LOOK_DIST) {
-            Point lastLeftPoint  = leftLine.getLeftPoint(pixels, row, getScreenWidth(), leftStartingX);
-            Point lastRightPoint = rightLine.getRightPoint(pixels, row, getScreenWidth(), rightStartingX, getCameraWidth());
-            leftLine.getLanePoints().add(lastLeftPoint);
-            rightLine.getLanePoints().add(lastRightPoint);
+    private void findLaneLines(int[] pixels, BitMask mask) {
+        int leftStartingX = getCameraWidth() / 2; // Where the search for a white pixel begins (On the Left)
+        int rightStartingX = getCameraWidth() / 2; // Where the search for a white pixel begins (On the Right)
+        // Whether rows where a line was not found last frame are searched this frame
+        boolean searchLost = frameCount++ % TRACKING_REACQUIRE == 0;
+        int middleRow = (int) ((getCameraHeight() - START_SEARCH + getCameraHeight() * LOOK_DIST) / 2);
+        leftModel.reset(middleRow);
+        rightModel.reset(middleRow);
+
+        for (int row = getCameraHeight() - START_SEARCH; row > getCameraHeight() * LOOK_DIST; row--) {
+            int lastLeftX = findLeft(pixels, mask, row, leftStartingX, searchLost);
+            int lastRightX = findRight(pixels, mask, row, rightStartingX, searchLost);
+            leftLine.add(lastLeftX);
+            rightLine.add(lastRightX);
+            if (lastLeftX != LaneLine.NOT_FOUND) {
+                leftModel.add(lastLeftX, row);
+            }
+            if (lastRightX != LaneLine.NOT_FOUND) {
+                rightModel.add(lastRightX, row);
+            }
 
             // If no lane was found, search from the last startingX
-            if (lastLeftPoint.isEmpty() && lastRightPoint.isEmpty()) {
-                findLaneLines(pixels, row - 1, leftStartingX, rightStartingX);
+            if (lastLeftX == LaneLine.NOT_FOUND && lastRightX == LaneLine.NOT_FOUND) {
+                continue;
+            }
 
-            // If Only the right lane was found, right starts from last starting X. Left starts from last startingX
-            } else if (lastLeftPoint.isEmpty()) {
-                int startSearchX = lastRightPoint.getX() - SEARCH_OFFSET;
-                findLaneLines(pixels, row - 1, startSearchX, startSearchX);
+            // If Only the right lane was found, both start from the right lane.
+            if (lastLeftX == LaneLine.NOT_FOUND) {
+                leftStartingX = lastRightX - SEARCH_OFFSET;
+                rightStartingX = leftStartingX;
 
-            // If Only the left lane was found, left starts from last starting X. Right starts from last startingX
-            } else if (lastRightPoint.isEmpty()) {
-                int startSearchX = lastLeftPoint.getX() + SEARCH_OFFSET;
-                findLaneLines(pixels, row - 1, startSearchX, startSearchX);
+            // If Only the left lane was found, both start from the left lane.
+            } else if (lastRightX == LaneLine.NOT_FOUND) {
+                leftStartingX = lastLeftX + SEARCH_OFFSET;
+                rightStartingX = leftStartingX;
 
             // If Both lanes are found start search from last X + or - 100.
             } else {
-                findLaneLines(pixels, row - 1, lastLeftPoint.getX() + SEARCH_OFFSET,
-                        lastRightPoint.getX() - SEARCH_OFFSET);
+                leftStartingX = lastLeftX + SEARCH_OFFSET;
+                rightStartingX = lastRightX - SEARCH_OFFSET;
             }
         }
     }
 
     /**
-     * Calculate the array of midpoints from the two LaneLines.
+     * Searches a row for the left line, on the mask if there is one
+     */
+    private int findLeft(int[] pixels, BitMask mask, int row, int startingX, boolean searchLost) {
+        if (mask != null) {
+            return USE_LANE_TRACKING ? leftLine.trackLeft(mask, row, startingX, searchLost)
+                    : leftLine.findLeft(mask, row, startingX);
+        }
+        return USE_LANE_TRACKING ? leftLine.trackLeft(pixels, row, getScreenWidth(), startingX, searchLost)
+                : leftLine.findLeft(pixels, row, getScreenWidth(), startingX);
+    }
+
+    /**
+     * Searches a row for the right line, on the mask if there is one
+     */
+    private int findRight(int[] pixels, BitMask mask, int row, int startingX, boolean searchLost) {
+        if (mask != null) {
+            return USE_LANE_TRACKING ? rightLine.trackRight(mask, row, startingX, getCameraWidth(), searchLost)
+                    : rightLine.findRight(mask, row, startingX, getCameraWidth());
+        }
+        return USE_LANE_TRACKING
+                ? rightLine.trackRight(pixels, row, getScreenWidth(), startingX, getCameraWidth(), searchLost)
+                : rightLine.findRight(pixels, row, getScreenWidth(), startingX, getCameraWidth());
+    }
+
+    /**
+     * Calculate the midpoints from the two LaneLines.
      * If Respective Y-level has a point in both lines, average the X to find mid-Point
      * If Respective Y-level has a point in only one line, devide road the road width by 2, and add or subtract
      * to one known point.
      * If Respective Y-level has no point in either line, midPoint is cameraWidth / 2
-     * @return
      */
-    private ArrayList<Point> calculateMidPoints() {
-        ArrayList<Point> midPoints = new ArrayList<>();
+    private void calculateMidPoints() {
         boolean isFirst = true; // Holds weather or not both points have been found yet.
+        midCount = 0;
 
-        // Iterate over every point in the left and right lanes.
-        for (int idx = 0; idx < leftLine.getLanePoints().size(); idx++) {
-            Point leftPoint = leftLine.getLanePoints().get(idx); // The left point at the element idx.
-            Point rightPoint = rightLine.getLanePoints().get(idx); // The right point at the element idx.
+        // Iterate over every row searched in the left and right lanes.
+        for (int idx = 0; idx < leftLine.size(); idx++) {
+            int leftX = leftLine.getColumn(idx); // The left point at the element idx.
+            int rightX = rightLine.getColumn(idx); // The right point at the element idx.
             int yValue = getCameraHeight() - (START_SEARCH + idx); // The y value of the left and right points.
 
             // If neither line is found, add a point at cameraWidth / 2, yValue
-            if (leftPoint.isEmpty() && rightPoint.isEmpty()) {
+            if (leftX == LaneLine.NOT_FOUND && rightX == LaneLine.NOT_FOUND) {
                 if (USE_NO_LANE_DETECTION) {
-                    midPoints.add(new Point(getCameraWidth() / 2, yValue));
+                    addMidPoint(getCameraWidth() / 2, yValue);
                 }
             // If Ony the right Point is found, add a point at the x rightPoint - road width / 2.
-            } else if (leftPoint.isEmpty()) {
-                midPoints.add(new Point(rightPoint.getX() - (calculateRoadWidth(yValue) / 2), yValue));
+            } else if (leftX == LaneLine.NOT_FOUND) {
+                addMidPoint(rightX - (calculateRoadWidth(yValue) / 2), yValue);
             // If Only the left Point is found, add a point at the x leftPoint + road width / 2.
-            } else if (rightPoint.isEmpty()) {
-                midPoints.add(new Point(leftPoint.getX() + (calculateRoadWidth(yValue) / 2), yValue));
+            } else if (rightX == LaneLine.NOT_FOUND) {
+                addMidPoint(leftX + (calculateRoadWidth(yValue) / 2), yValue);
             // If both lines are found, average the two lines.
             } else {
-                midPoints.add(new Point((int) Math.round((leftPoint.getX() + rightPoint.getX()) / 2.0), yValue));
+                addMidPoint((int) Math.round((leftX + rightX) / 2.0), yValue);
                 // Set x1 and y1 to be the first Points to have lines on both sides.
                 if (isFirst) {
-                    calcSlopePoint1.setX(Math.abs(leftPoint.getX() - rightPoint.getX()));
+                    calcSlopePoint1.setX(Math.abs(leftX - rightX));
                     calcSlopePoint1.setY(yValue);
                     isFirst = false;
                 // set x2 and y2 to be the last points to have lines on both sides.
                 } else {
-                    calcSlopePoint2.setX(Math.abs(leftPoint.getX() - rightPoint.getX()));
+                    calcSlopePoint2.setX(Math.abs(leftX - rightX));
                     calcSlopePoint2.setY(yValue);
                 }
             }
@@ -161,30 +258,131 @@ public class SteeringMk4 extends SteeringBase {
         if (isReliable(calcSlopePoint1, calcSlopePoint2)) {
             slope = calculateRoadSlope(calcSlopePoint1, calcSlopePoint2);
         }
-        return midPoints;
+    }
+
+    private void addMidPoint(int x, int y) {
+        midXs[midCount] = x;
+        midYs[midCount] = y;
+        midCount++;
+    }
+
+    /**
+     * Same as SteeringBase.calculateSteerPoint, on the mid point arrays.
+     * Averages the mid points between MIN_DIST_LOOK and MAX_DIST_LOOK of the way up.
+     * @param steerPoint Point set to the average
+     */
+    private void calculateSteerPoint(Point steerPoint) {
+        setStartTarget((int) (midCount * MIN_DIST_LOOK));
+        setEndTarget((int) (midCount * MAX_DIST_LOOK));
+
+        double ySum = 0;
+        double xSum = 0;
+        int count = 0;
+
+        // Sum the x's and the y's
+        for (int idx = getStartTarget(); idx < getEndTarget(); idx++) {
+            xSum += midXs[idx];
+            ySum += midYs[idx];
+            count++;
+        }
+
+        steerPoint.setX((int) (xSum / count));
+        steerPoint.setY((int) (ySum / count));
+    }
+
+    /**
+     * Fits curves to the left and right lines, then moves the steer point onto the middle of the lane
+     * they describe at the same height, and sets the curvature and furthest point from them.
+     * If neither line has enough points, the averaged mid points are used as they are.
+     */
+    private void fitLaneModel() {
+        boolean leftFitted = leftModel.fit(MIN_MODEL_POINTS);
+        boolean rightFitted = rightModel.fit(MIN_MODEL_POINTS);
+        modelFitted = (leftFitted || rightFitted) && midCount > 0;
+        if (!modelFitted) {
+            setCurvature(0);
+            return;
+        }
+
+        int steerY = steerPoint.getY();
+        steerPoint.setX((int) Math.round(laneMiddle(steerY, leftFitted, rightFitted)));
+        if (leftFitted && rightFitted) {
+            setCurvature((leftModel.curvatureAt(steerY) + rightModel.curvatureAt(steerY)) / 2);
+        } else {
+            setCurvature((leftFitted ? leftModel : rightModel).curvatureAt(steerY));
+        }
+
+        int furthestY = midYs[midCount - 1];
+        furthestPoint.setX((int) Math.round(laneMiddle(furthestY, leftFitted, rightFitted)));
+        furthestPoint.setY(furthestY);
+    }
+
+    /**
+     * Middle of the lane at a row, from both fitted lines, or from one and the road width.
+     */
+    private double laneMiddle(int yValue, boolean leftFitted, boolean rightFitted) {
+        if (leftFitted && rightFitted) {
+            return (leftModel.xAt(yValue) + rightModel.xAt(yValue)) / 2;
+        } else if (leftFitted) {
+            return leftModel.xAt(yValue) + calculateRoadWidth(yValue) / 2;
+        } else {
+            return rightModel.xAt(yValue) - calculateRoadWidth(yValue) / 2;
+        }
+    }
+
+    /**
+     * @return the middle of the fitted lane on the furthest row with a mid point,
+     * or the furthest mid point if no curve was fitted.
+     */
+    @Override
+    public Point getFurthestPoint() {
+        return modelFitted ? furthestPoint : super.getFurthestPoint();
+    }
+
+    /**
+     * Copies the points found this frame into an overlay the painter does not hold, then hands it to the painter.
+     */
+    private void publishPoints() {
+        PointOverlay points = overlays.fill();
+        for (int idx = 0; idx < leftLine.size(); idx++) {
+            int yValue = getCameraHeight() - (START_SEARCH + idx);
+            if (leftLine.isFound(idx)) {
+                points.addLeft(leftLine.getColumn(idx), yValue);
+            }
+            if (rightLine.isFound(idx)) {
+                points.addRight(rightLine.getColumn(idx), yValue);
+            }
+        }
+        for (int idx = 0; idx < midCount; idx++) {
+            points.addMid(midXs[idx], midYs[idx]);
+        }
+        points.setSteerPoint(getSteerPoint(), getStartTarget(), getEndTarget());
+        setLeftPoints(points.getLeftPoints());
+        setRightPoints(points.getRightPoints());
+        setMidPoints(points.getMidPoints());
+        overlays.publish();
+    }
+
+    @Override
+    public PointOverlay takeOverlay() {
+        return overlays.take();
     }
 
     /**
      * Calculate the slope of the road width. Between Point1, and Point2
      * @param point1 Fist Point to find slope.
      * @param point2 Second Point to find slope.
-     * @return the slope of the equation for road width.
+     * @return the slope of the equation for road width, the average so far if the widths are the same.
      */
     private float calculateRoadSlope(Point point1, Point point2) {
-        float slopeSum = 0;
         int x1 = point1.getX();
         int y1 = point1.getY();
         int x2 = point2.getX();
         int y2 = point2.getY();
-        pastSlopes.remove(0);
-        pastSlopes.add((float) (y1 - y2) / (x1 - x2));
-
-        // Average the slopes in pastSlopes
-        for (Float slope : pastSlopes) {
-            slopeSum += slope;
+        if (x1 == x2) {
+            return (float) slopeAverage.getValue();
         }
-        float slope = slopeSum / pastSlopes.size();
-        return slope;
+        return (float) slopeAverage.update((float) (y1 - y2) / (x1 - x2));
     }
 
     /**
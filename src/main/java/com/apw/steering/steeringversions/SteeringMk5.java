@@ -0,0 +1,274 @@
+package com.apw.steering.steeringversions;
+
+import com.apw.apw3.DriverCons;
+import com.apw.carcontrol.CarControl;
+import com.apw.steering.steeringclasses.AlphaBetaFilter;
+import com.apw.speedcon.CameraCalibration;
+import com.apw.speedcon.Constants;
+import com.apw.steering.steeringclasses.InversePerspectiveMap;
+import com.apw.steering.steeringclasses.KinematicPredictor;
+import com.apw.steering.steeringclasses.LaneModel;
+import com.apw.steering.steeringclasses.Point;
+import com.apw.steering.steeringclasses.OverlayBuffer;
+import com.apw.steering.steeringclasses.PointOverlay;
+import static com.apw.steering.SteeringConstants.DEFAULT_LANE_WIDTH;
+import static com.apw.steering.SteeringConstants.IPM_CELL_SIZE;
+import static com.apw.steering.SteeringConstants.IPM_FOCAL_LENGTH;
+import static com.apw.steering.SteeringConstants.IPM_HALF_WIDTH;
+import static com.apw.steering.SteeringConstants.IPM_HORIZON;
+import static com.apw.steering.SteeringConstants.IPM_MAX_DISTANCE;
+import static com.apw.steering.SteeringConstants.LANE_TRACKING_INDEX;
+import static com.apw.steering.SteeringConstants.LANE_WIDTH_GAIN;
+import static com.apw.steering.SteeringConstants.LOOKAHEAD_DISTANCE;
+import static com.apw.steering.SteeringConstants.LOOK_DIST;
+import static com.apw.steering.SteeringConstants.MAX_WHEEL_ANGLE;
+import static com.apw.steering.SteeringConstants.MIN_MODEL_POINTS;
+import static com.apw.steering.SteeringConstants.START_SEARCH;
+import static com.apw.steering.SteeringConstants.WHEEL_BASE;
+
+/**
+ * SteeringMk5 finds the lane on a top-down view of the road instead of in the camera image.
+ * The same rows SteeringMk4 searches are warped through an InversePerspectiveMap, where the lane lines
+ * are parallel and the lane is the same width at every distance, so a single lane width replaces
+ * Mk4's road width slope. Curves are fitted to both lines, and the car steers towards the middle of
+ * the lane LOOKAHEAD_DISTANCE ahead, at the true angle to that point.
+ * The lane's width and its position ahead are smoothed across frames.
+ * Given the car's motion, the angle is taken from where the car will be when it reaches the servo.
+ *
+ * @see SteeringMk4
+ * @see InversePerspectiveMap
+ */
+public class SteeringMk5 extends SteeringBase {
+    private static final int NOT_FOUND = -1;
+
+    private final InversePerspectiveMap map;
+    private final byte[] grid; // Top-down view of the road, 1 where the road is white
+    private final int[] leftColumns; // Grid column of the left line on each grid row, or NOT_FOUND
+    private final int[] rightColumns;
+    private final LaneModel leftModel = new LaneModel();
+    private final LaneModel rightModel = new LaneModel();
+    private final KinematicPredictor predictor = new KinematicPredictor(WHEEL_BASE, MAX_WHEEL_ANGLE);
+    // Lane width in grid cells, followed on every row both lines are found on
+    private final AlphaBetaFilter laneWidth = new AlphaBetaFilter(LANE_WIDTH_GAIN, 0, DEFAULT_LANE_WIDTH / IPM_CELL_SIZE);
+    // Distance right of the car of the middle of the lane ahead
+    private final AlphaBetaFilter lanePosition = AlphaBetaFilter.trackingIndex(LANE_TRACKING_INDEX, 0);
+    private int angle = 0;
+    private final Point steerPoint = new Point(0, 0);
+    private final Point furthestPoint = new Point(0, 0);
+    private boolean modelFitted = false;
+    private final OverlayBuffer overlays; // Points handed to the painter
+
+    /**
+     * Constructor used for trakSim
+     *
+     * @param cameraWidth Width of the camera (Excluding map on right side)
+     * @param cameraHeight Height of the window
+     * @param screenWidth Width of the Window
+     */
+    public SteeringMk5(int cameraWidth, int cameraHeight, int screenWidth) {
+        super(cameraWidth, cameraHeight, screenWidth);
+        // The calibration is of the car's camera, TrakSim's focal length is fixed
+        map = createMap(IPM_FOCAL_LENGTH);
+        grid = new byte[map.getRows() * map.getColumns()];
+        leftColumns = new int[map.getRows()];
+        rightColumns = new int[map.getRows()];
+        overlays = new OverlayBuffer(map.getRows());
+        initializeArrays();
+    }
+
+    /**
+     * Constructor used for actual car
+     * @param control the control used to control the car.
+     */
+    public SteeringMk5(CarControl control) {
+        super(control);
+        map = createMap(new CameraCalibration().getFocalLengthPixels(getCameraWidth(), Constants.SENSOR_CAM_WIDTH));
+        grid = new byte[map.getRows() * map.getColumns()];
+        leftColumns = new int[map.getRows()];
+        rightColumns = new int[map.getRows()];
+        overlays = new OverlayBuffer(map.getRows());
+        initializeArrays();
+    }
+
+    /**
+     * Builds the map of the rows Mk4 searches, with the calibrated focal length if there is one.
+     */
+    private InversePerspectiveMap createMap(double focalLength) {
+        if (focalLength <= 0) {
+            focalLength = IPM_FOCAL_LENGTH;
+        }
+        return new InversePerspectiveMap(getCameraWidth(), getScreenWidth(),
+                (int) (getCameraHeight() * LOOK_DIST) + 1, getCameraHeight() - START_SEARCH, focalLength,
+                getCameraHeight() * IPM_HORIZON, DriverCons.D_CameraHi, IPM_CELL_SIZE, IPM_HALF_WIDTH,
+                IPM_MAX_DISTANCE);
+    }
+
+    private void initializeArrays() {
+        setSteerPoint(steerPoint);
+    }
+
+    /**
+     * Warps the image to a top-down view, finds the lane in it, and returns the angle to the middle of the lane
+     * LOOKAHEAD_DISTANCE ahead of where the car will be. If neither line is found, keeps the last angle.
+     * @param pixels the Array of pixels containing the screen pixels.
+     * @return The degree offset
+     */
+    @Override
+    public int getSteeringAngle(int[] pixels) {
+        map.warp(pixels, grid);
+        findLaneLines();
+        boolean leftFitted = leftModel.fit(MIN_MODEL_POINTS);
+        boolean rightFitted = rightModel.fit(MIN_MODEL_POINTS);
+        modelFitted = leftFitted || rightFitted;
+        if (modelFitted) {
+            double lookAhead = predictor.getDistance() + LOOKAHEAD_DISTANCE;
+            double lookRow = Math.max(0, Math.min(map.gridRowOf(lookAhead), map.getRows() - 1));
+            double lateral = lanePosition.update(map.lateralOf(laneMiddle(lookRow, leftFitted, rightFitted)));
+            double distance = map.distanceOf(lookRow);
+            angle = (int) Math.round(Math.toDegrees(Math.atan2(predictor.lateralOf(lateral, distance),
+                    predictor.distanceOf(lateral, distance))));
+
+            LaneModel curve = leftFitted && rightFitted ? null : leftFitted ? leftModel : rightModel;
+            double curvature = curve != null ? curve.curvatureAt(lookRow)
+                    : (leftModel.curvatureAt(lookRow) + rightModel.curvatureAt(lookRow)) / 2;
+            setCurvature(curvature / IPM_CELL_SIZE);
+
+            project(steerPoint, lateral, distance);
+            int furthestRow = map.getRows() - 1;
+            project(furthestPoint, map.lateralOf(laneMiddle(furthestRow, leftFitted, rightFitted)),
+                    map.distanceOf(furthestRow));
+            setStartTarget((int) lookRow - 2);
+            setEndTarget((int) lookRow + 2);
+        } else {
+            setCurvature(0);
+        }
+        publishPoints(leftFitted, rightFitted);
+        return angle;
+    }
+
+    /**
+     * Predicts where the car will be when this frame's angle reaches the servo, with a bicycle model.
+     */
+    @Override
+    public void setMotion(double speed, int steering, double latency) {
+        predictor.predict(speed, steering, latency);
+    }
+
+    /**
+     * Searches each row of the grid out from the middle of the lane on the row before, nearest first,
+     * adding the lines found to the lane models.
+     * The lane width follows the distance between the lines on rows where both are found.
+     */
+    private void findLaneLines() {
+        int columns = map.getColumns();
+        int searchColumn = columns / 2;
+        leftModel.reset(map.getRows() / 2);
+        rightModel.reset(map.getRows() / 2);
+
+        for (int gridRow = 0; gridRow < map.getRows(); gridRow++) {
+            int rowStart = gridRow * columns;
+            int left = NOT_FOUND;
+            for (int column = searchColumn; column >= 0; column--) {
+                if (grid[rowStart + column] == 1) {
+                    left = column;
+                    break;
+                }
+            }
+            int right = NOT_FOUND;
+            for (int column = searchColumn + 1; column < columns; column++) {
+                if (grid[rowStart + column] == 1) {
+                    right = column;
+                    break;
+                }
+            }
+            leftColumns[gridRow] = left;
+            rightColumns[gridRow] = right;
+
+            if (left != NOT_FOUND && right != NOT_FOUND) {
+                leftModel.add(left, gridRow);
+                rightModel.add(right, gridRow);
+                laneWidth.update(right - left);
+                searchColumn = (left + right) / 2;
+            } else if (left != NOT_FOUND) {
+                leftModel.add(left, gridRow);
+                searchColumn = left + (int) (laneWidth.getValue() / 2);
+            } else if (right != NOT_FOUND) {
+                rightModel.add(right, gridRow);
+                searchColumn = right - (int) (laneWidth.getValue() / 2);
+            }
+            searchColumn = Math.max(0, Math.min(searchColumn, columns - 2));
+        }
+    }
+
+    /**
+     * Middle of the lane at a grid row, from both fitted lines, or from one and the lane width.
+     * @return grid column of the middle of the lane
+     */
+    private double laneMiddle(double gridRow, boolean leftFitted, boolean rightFitted) {
+        if (leftFitted && rightFitted) {
+            return (leftModel.xAt(gridRow) + rightModel.xAt(gridRow)) / 2;
+        } else if (leftFitted) {
+            return leftModel.xAt(gridRow) + laneWidth.getValue() / 2;
+        } else {
+            return rightModel.xAt(gridRow) - laneWidth.getValue() / 2;
+        }
+    }
+
+    /**
+     * Sets point to where a point on the road is in the camera image.
+     */
+    private void project(Point point, double lateral, double distance) {
+        point.setX((int) Math.round(map.imageColumn(lateral, distance)));
+        point.setY((int) Math.round(map.imageRow(distance)));
+    }
+
+    /**
+     * Fills an overlay the painter does not hold with the lines found and the middle of the fitted lane,
+     * drawn where they are in the camera image, then hands it to the painter.
+     */
+    private void publishPoints(boolean leftFitted, boolean rightFitted) {
+        PointOverlay points = overlays.fill();
+        for (int gridRow = 0; gridRow < map.getRows(); gridRow++) {
+            double distance = map.distanceOf(gridRow);
+            int imageRow = (int) Math.round(map.imageRow(distance));
+            if (leftColumns[gridRow] != NOT_FOUND) {
+                points.addLeft((int) Math.round(map.imageColumn(map.lateralOf(leftColumns[gridRow]), distance)),
+                        imageRow);
+            }
+            if (rightColumns[gridRow] != NOT_FOUND) {
+                points.addRight((int) Math.round(map.imageColumn(map.lateralOf(rightColumns[gridRow]), distance)),
+                        imageRow);
+            }
+            if (modelFitted) {
+                double lateral = map.lateralOf(laneMiddle(gridRow, leftFitted, rightFitted));
+                points.addMid((int) Math.round(map.imageColumn(lateral, distance)), imageRow);
+            }
+        }
+        points.setSteerPoint(getSteerPoint(), getStartTarget(), getEndTarget());
+        setLeftPoints(points.getLeftPoints());
+        setRightPoints(points.getRightPoints());
+        setMidPoints(points.getMidPoints());
+        overlays.publish();
+    }
+
+    @Override
+    public PointOverlay takeOverlay() {
+        return overlays.take();
+    }
+
+    /**
+     * @return the middle of the fitted lane at the far end of the grid, or null if no lane was found.
+     */
+    @Override
+    public Point getFurthestPoint() {
+        return modelFitted ? furthestPoint : null;
+    }
+
+    public InversePerspectiveMap getMap() {
+        return map;
+    }
+
+    public double getLaneWidth() {
+        return laneWidth.getValue() * IPM_CELL_SIZE;
+    }
+}